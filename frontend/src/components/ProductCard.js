@@ -1,4 +1,4 @@
-import React, { useEffect, useState } from "react";
+import React, { useState } from "react";
 import { useNavigate } from "react-router-dom";
 import "../styles/ProductCard.css";
 import { useAuth } from "../context/AuthContext";
@@ -11,69 +11,14 @@ function ProductCard({ product }) {
     const API_URL = process.env.REACT_APP_API_URL;
     const { user, token } = useAuth();
 
-    const [cartQuantity, setCartQuantity] = useState(0);
     const [reviews, setReviews] = useState([]);
     const [isModalOpen, setIsModalOpen] = useState(false);
-    const [averageRating, setAverageRating] = useState(null);
+    const averageRating = product.averageRating != null ? Number(product.averageRating).toFixed(1) : null;
     const [productCardError, setProductCardError] = useState("");
 
-    const { updateCart } = useCart();
-
-    useEffect(() => {
-        if (!user) return;
-
-        const fetchCart = async () => {
-            try {
-                const response = await fetch(`${API_URL}/orders/user/cart`, {
-                    headers: {
-                        Authorization: `Bearer ${token}`,
-                    },
-                });
-
-                if (response.ok) {
-                    const text = await response.text();
-                    const data = text ? JSON.parse(text) : null;
-                    const activeOrder = data?.order;
-                    if (activeOrder) {
-                        const foundItem = activeOrder.items.find(item => item.product.id === product.id);
-                        setCartQuantity(foundItem ? foundItem.quantity : 0);
-                    }
-                }
-            } catch (error) {
-                console.error("Ошибка при проверке корзины: ", error);
-            }
-        };
-
-        fetchCart();
-    }, [product.id, user, API_URL, token]);
-
-    useEffect(() => {
-        if (!user) {
-            setCartQuantity(0);
-        }
-    }, [user]);
-
-    useEffect(() => {
-        const fetchReviews = async () => {
-            try {
-                const response = await fetch(`${API_URL}/reviews/${product.id}`);
-                if (response.ok) {
-                    const data = await response.json();
-                    setReviews(data);
-                    if (data.length > 0) {
-                        const avg = data.reduce((sum, review) => sum + review.rating, 0) / data.length;
-                        setAverageRating(avg.toFixed(1));
-                    } else {
-                        setAverageRating(null);
-                    }
-                }
-            } catch (error) {
-                console.error("Ошибка загрузки отзывов", error);
-            }
-        };
-
-        fetchReviews();
-    }, [product.id, API_URL]);
+    // Количество берется из общей сводки корзины, а не отдельным запросом от каждой карточки
+    const { quantities, updateCart } = useCart();
+    const cartQuantity = user ? (quantities[product.id] || 0) : 0;
 
     const handleAddToCart = async () => {
         if (!user) {
@@ -91,7 +36,6 @@ function ProductCard({ product }) {
             });
 
             if (response.ok) {
-                setCartQuantity(prev => prev + 1);
                 setProductCardError("");
                 updateCart(token);
             } else {
@@ -119,7 +63,6 @@ function ProductCard({ product }) {
             });
 
             if (response.ok) {
-                setCartQuantity(prev => Math.max(prev - 1, 0));
                 setProductCardError("");
                 updateCart(token);
             } else {
@@ -148,7 +91,7 @@ function ProductCard({ product }) {
     return (
         <>
             <div className="product-card">
-                <img src={product.image || "https://via.placeholder.com/150"} alt={product.name} />
+                <img src={product.images?.card || product.image || "https://via.placeholder.com/150"} alt={product.name} />
                 <h3>{product.name}</h3>
                 <p>{product.description}</p>
                 <p>Цена: {product.price}₽</p>
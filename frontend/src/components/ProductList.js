@@ -39,23 +39,6 @@ function ProductList() {
         }
     }, [API_URL, isOnline]);
 
-    const fetchReviewsForProduct = useCallback(async (productId) => {
-        if (!isOnline) return;
-        try {
-            const response = await fetch(`${API_URL}/reviews/${productId}`);
-            if (response.ok) {
-                const data = await response.json();
-                if (data.length > 0) {
-                    const avgRating = data.reduce((sum, review) => sum + review.rating, 0) / data.length;
-                    return avgRating.toFixed(1);
-                }
-            }
-        } catch (error) {
-            console.error(`Ошибка загрузки отзывов для товара ${productId}: `, error)
-        }
-        return null;
-    }, [API_URL, isOnline]);
-
     const fetchProducts = useCallback(async () => {
         try {
             const url = selectedCategory
@@ -68,13 +51,11 @@ function ProductList() {
             if (response.ok) {
                 const data = await response.json();
 
-                const productsWithRating = await Promise.all(
-                    data.map(async (p) => ({
-                        ...p,
-                        cartQuantity: 0,
-                        averageRating: await fetchReviewsForProduct(p.id),
-                    }))
-                );
+                const productsWithRating = data.map((p) => ({
+                    ...p,
+                    cartQuantity: 0,
+                    averageRating: p.rating && p.rating.count > 0 ? p.rating.average : null,
+                }));
                 setProducts(productsWithRating);
             } else {
                 console.error("Ошибка загрузки товаров");
@@ -84,7 +65,7 @@ function ProductList() {
         } finally {
             setLoading(false);
         }
-    }, [API_URL, selectedCategory, fetchReviewsForProduct]);
+    }, [API_URL, selectedCategory]);
 
     useEffect(() => {
         fetchCategories();
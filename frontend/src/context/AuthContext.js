@@ -1,6 +1,18 @@
-import { createContext, useContext, useEffect, useRef, useState } from "react";
+import { createContext, useCallback, useContext, useEffect, useRef, useState } from "react";
 import { useCart } from "./CartContext";
 
+// Обновляем токен доступа заранее, чтобы запросы не упирались в истекший токен
+const REFRESH_MARGIN_MS = 60 * 1000;
+
+function tokenExpiresAt(token) {
+    try {
+        const payload = JSON.parse(atob(token.split(".")[1].replace(/-/g, "+").replace(/_/g, "/")));
+        return payload.exp * 1000;
+    } catch {
+        return 0;
+    }
+}
+
 export const AuthContext = createContext({
     user: null,
     login: () => { },
@@ -11,30 +23,114 @@ export function AuthProvider({ children }) {
     const [user, setUser] = useState(null);
     const [token, setToken] = useState(null);
     const [isLoading, setIsLoading] = useState(true);
-    const { setCart, updateCart } = useCart();
+    const { resetCart, updateCart } = useCart();
     const hasFetchedCart = useRef(false);
 
+    const clearSession = useCallback(() => {
+        setUser(null);
+        setToken(null);
+        resetCart();
+        localStorage.clear();
+    }, [resetCart]);
+
+    // Возвращает новый токен доступа или null, если сессию продлить нельзя
+    const rotateSession = useCallback(async () => {
+        // Пока ждали блокировку, другая вкладка могла уже обновить сессию
+        const storedToken = localStorage.getItem("token");
+        if (storedToken && tokenExpiresAt(storedToken) - REFRESH_MARGIN_MS > Date.now()) {
+            setToken(storedToken);
+            return storedToken;
+        }
+
+        const refreshToken = localStorage.getItem("refreshToken");
+        if (!refreshToken) return null;
+
+        try {
+            const response = await fetch(`${process.env.REACT_APP_API_URL}/auth/refresh`, {
+                method: "POST",
+                headers: { "Content-Type": "application/json" },
+                body: JSON.stringify({ refreshToken }),
+            });
+
+            if (!response.ok) {
+                if (response.status === 401 || response.status === 403) {
+                    clearSession();
+                }
+                return null;
+            }
+
+            const data = await response.json();
+            localStorage.setItem("token", data.token);
+            localStorage.setItem("refreshToken", data.refreshToken);
+            setToken(data.token);
+            return data.token;
+        } catch (error) {
+            console.error("Ошибка обновления сессии: ", error);
+            return null;
+        }
+    }, [clearSession]);
+
+    // Одна ротация на все вкладки: повторное предъявление refresh-токена сервер считает кражей
+    const refreshSession = useCallback(() => {
+        if (navigator.locks) {
+            return navigator.locks.request("auth-refresh", rotateSession);
+        }
+        return rotateSession();
+    }, [rotateSession]);
+
+    useEffect(() => {
+        const handleStorage = (event) => {
+            if (event.storageArea !== localStorage) return;
+
+            if (event.key === "token" && event.newValue) {
+                setToken(event.newValue);
+            } else if (event.key === null || (event.key === "token" && !event.newValue)) {
+                // Выход в другой вкладке
+                setUser(null);
+                setToken(null);
+                resetCart();
+            }
+        };
+
+        window.addEventListener("storage", handleStorage);
+        return () => window.removeEventListener("storage", handleStorage);
+    }, [resetCart]);
+
     useEffect(() => {
         if (hasFetchedCart.current) return;
         hasFetchedCart.current = true;
 
-        const savedUser = localStorage.getItem("user");
-        const savedToken = localStorage.getItem("token");
+        const restoreSession = async () => {
+            const savedUser = localStorage.getItem("user");
+            let savedToken = localStorage.getItem("token");
 
-        if (savedUser) {
-            const parsedUser = JSON.parse(savedUser);
-            setUser(parsedUser);
+            if (savedToken && tokenExpiresAt(savedToken) - REFRESH_MARGIN_MS <= Date.now()) {
+                savedToken = await refreshSession();
+            }
 
-            if (parsedUser.role !== "ADMIN") {
-                updateCart(savedToken);
+            if (savedUser && savedToken) {
+                const parsedUser = JSON.parse(savedUser);
+                setUser(parsedUser);
+                setToken(savedToken);
+
+                if (parsedUser.role !== "ADMIN") {
+                    updateCart(savedToken);
+                }
             }
-        }
-        if (savedToken) {
-            setToken(savedToken);
-        }
 
-        setIsLoading(false);
-    }, [updateCart]);
+            setIsLoading(false);
+        };
+
+        restoreSession();
+    }, [updateCart, refreshSession]);
+
+    useEffect(() => {
+        if (!token) return;
+
+        const delay = Math.max(tokenExpiresAt(token) - Date.now() - REFRESH_MARGIN_MS, 0);
+        const timer = setTimeout(refreshSession, delay);
+        return () => clearTimeout(timer);
+    }, [token, refreshSession]);
 
     const login = (userData) => {
         setUser({ id: userData.id, email: userData.email, role: userData.role, name: userData.name });
@@ -43,6 +139,9 @@ export function AuthProvider({ children }) {
         if (userData.token) {
             setToken(userData.token)
             localStorage.setItem("token", userData.token);
+            if (userData.refreshToken) {
+                localStorage.setItem("refreshToken", userData.refreshToken);
+            }
             if (userData.role !== "ADMIN") {
                updateCart(userData.token); 
             }
@@ -57,8 +156,10 @@ export function AuthProvider({ children }) {
             const response = await fetch(`${process.env.REACT_APP_API_URL}/auth/logout`, {
                 method: "POST",
                 headers: {
+                    "Content-Type": "application/json",
                     "Authorization": `Bearer ${token}`
                 },
+                body: JSON.stringify({ refreshToken: localStorage.getItem("refreshToken") }),
                 credentials: "include",
             });
 
@@ -69,10 +170,7 @@ export function AuthProvider({ children }) {
             console.error("Ошибка выхода: ", error);
         }
 
-        setUser(null);
-        setToken(null);
-        setCart([]);
-        localStorage.clear();
+        clearSession();
     };
 
     return (
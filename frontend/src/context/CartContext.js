@@ -1,43 +1,56 @@
-import { createContext, useContext, useEffect, useState } from "react";
+import { createContext, useCallback, useContext, useEffect, useRef, useState } from "react";
 import { useAuth } from "./AuthContext";
 
 export const CartContext = createContext(null);
 
 export function CartProvider({ children }) {
     const [cart, setCart] = useState([]);
+    const [quantities, setQuantities] = useState({});
     const [cartCount, setCartCount] = useState(0);
+    const etagRef = useRef(null);
     const { user } = useAuth() || {};
 
-    useEffect(() => {
-        setCartCount(new Set(cart.map(item => item.product.id)).size);
-    }, [cart]);
-
-    const updateCart = async (token, user) => {
+    // Сводка корзины одна на страницу: карточки товаров берут количество отсюда,
+    // а неизменившаяся корзина отвечает 304 без тела
+    const updateCart = useCallback(async (token) => {
         if (!token) return;
         try {
-            const response = await fetch(`${process.env.REACT_APP_API_URL}/orders/user/cart`, {
-                headers: { Authorization: `Bearer ${token}` },
+            const headers = { Authorization: `Bearer ${token}` };
+            if (etagRef.current) {
+                headers["If-None-Match"] = etagRef.current;
+            }
+            const response = await fetch(`${process.env.REACT_APP_API_URL}/orders/user/cart/summary`, {
+                headers,
+                cache: "no-store",
             });
-    
+
+            if (response.status === 304) return;
             if (response.ok) {
-                const text = await response.text();
-                const data = text ? JSON.parse(text) : null;
-                const activeOrder = data?.order;
-                setCart(activeOrder ? activeOrder.items : []);
+                const summary = await response.json();
+                etagRef.current = response.headers.get("ETag");
+                setQuantities(summary.quantities || {});
+                setCartCount(summary.itemCount);
             }
         } catch (error) {
             console.error("Ошибка загрузки корзины", error);
         }
-    };    
+    }, []);
+
+    const resetCart = useCallback(() => {
+        etagRef.current = null;
+        setCart([]);
+        setQuantities({});
+        setCartCount(0);
+    }, []);
 
     useEffect(() => {
         if (user && user.token && user?.role !== "ADMIN") {
             updateCart(user.token);
         }
-    }, [user]);
+    }, [user, updateCart]);
 
     return (
-        <CartContext.Provider value={{ cart, setCart, cartCount, updateCart }}>
+        <CartContext.Provider value={{ cart, setCart, quantities, cartCount, updateCart, resetCart }}>
             {children}
         </CartContext.Provider>
     );
@@ -45,4 +58,4 @@ export function CartProvider({ children }) {
 
 export function useCart() {
     return useContext(CartContext);
-}
\ No newline at end of file
+}
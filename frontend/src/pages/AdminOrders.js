@@ -1,4 +1,4 @@
-import { useEffect, useState } from "react";
+import { useCallback, useEffect, useState } from "react";
 import { useAuth } from "../context/AuthContext"
 import "../styles/AdminOrders.css";
 import { createPortal } from "react-dom";
@@ -7,6 +7,12 @@ function AdminOrders() {
     const { token } = useAuth();
     const [orders, setOrders] = useState([]);
     const [filterStatus, setFilterStatus] = useState("");
+    const [filterEmail, setFilterEmail] = useState("");
+    const [filterFrom, setFilterFrom] = useState("");
+    const [filterTo, setFilterTo] = useState("");
+    const [filterMinTotal, setFilterMinTotal] = useState("");
+    const [nextCursor, setNextCursor] = useState(null);
+    const [loadingMore, setLoadingMore] = useState(false);
     const API_URL = process.env.REACT_APP_API_URL;
     const [orderStatusError, setOrderStatusError] = useState("");
     const [showDeleteOrderModal, setShowDeleteOrderModal] = useState({ isOpen: false, orderId: null });
@@ -27,17 +33,62 @@ function AdminOrders() {
         };
     }, []);
 
-    useEffect(() => {
-        fetch(`${API_URL}/admin/orders`, {
+    // Заказы приходят страницами, фильтрация выполняется на сервере
+    const loadOrders = useCallback(async (cursor) => {
+        const params = new URLSearchParams({ size: "50" });
+        if (filterStatus) params.set("status", filterStatus);
+        if (filterEmail.trim()) params.set("email", filterEmail.trim());
+        if (filterFrom) params.set("from", filterFrom);
+        if (filterTo) params.set("to", filterTo);
+        if (filterMinTotal) params.set("minTotal", filterMinTotal);
+        if (cursor) params.set("cursor", cursor);
+
+        const response = await fetch(`${API_URL}/admin/orders?${params}`, {
             headers: {
                 "Authorization": `Bearer ${token}`
             }
-        })
-            .then(response => response.json())
-            .then(data => setOrders(data))
-            .catch(err => console.error("Ошибка загрузки заказов", err))
-            .finally(() => setLoading(false));
-    }, [API_URL, token]);
+        });
+        if (!response.ok) {
+            throw new Error(`HTTP ${response.status}`);
+        }
+        return response.json();
+    }, [API_URL, token, filterStatus, filterEmail, filterFrom, filterTo, filterMinTotal]);
+
+    useEffect(() => {
+        let cancelled = false;
+        const timer = setTimeout(() => {
+            loadOrders(null)
+                .then(page => {
+                    if (!cancelled) {
+                        setOrders(page.items);
+                        setNextCursor(page.nextCursor);
+                    }
+                })
+                .catch(err => console.error("Ошибка загрузки заказов", err))
+                .finally(() => {
+                    if (!cancelled) setLoading(false);
+                });
+        }, 300);
+
+        return () => {
+            cancelled = true;
+            clearTimeout(timer);
+        };
+    }, [loadOrders]);
+
+    const handleLoadMore = async () => {
+        if (!nextCursor || loadingMore) return;
+        setLoadingMore(true);
+        try {
+            const page = await loadOrders(nextCursor);
+            setOrders(prev => [...prev, ...page.items]);
+            setNextCursor(page.nextCursor);
+        } catch (err) {
+            console.error("Ошибка загрузки заказов", err);
+        } finally {
+            setLoadingMore(false);
+        }
+    };
 
     const handleStatusChange = async (orderId, newStatus) => {
         try {
@@ -104,8 +155,6 @@ function AdminOrders() {
         });
     };
 
-    const filteredOrders = filterStatus ? orders.filter(order => order.status === filterStatus) : orders;
-
     if (loading) {
         return (
             <div className="loading-container">
@@ -122,13 +171,21 @@ function AdminOrders() {
                 {!isOnline ? (
                     <p className="offline-message">Нет подключения к интернету</p>
                 ) : (
-                    <select className="admin-select" value={filterStatus} onChange={(e) => setFilterStatus(e.target.value)}>
-                        <option value="">Все</option>
-                        <option value="PROCESSING">В обработке</option>
-                        <option value="SENT">Отправлен</option>
-                        <option value="DELIVERED">Доставлен</option>
-                        <option value="CANCELLED">Отменен</option>
-                    </select>
+                    <div className="admin-orders-filters">
+                        <select className="admin-select" value={filterStatus} onChange={(e) => setFilterStatus(e.target.value)}>
+                            <option value="">Все</option>
+                            <option value="PROCESSING">В обработке</option>
+                            <option value="SENT">Отправлен</option>
+                            <option value="DELIVERED">Доставлен</option>
+                            <option value="CANCELLED">Отменен</option>
+                        </select>
+                        <input type="text" placeholder="Email пользователя" value={filterEmail}
+                            onChange={(e) => setFilterEmail(e.target.value)} />
+                        <input type="date" value={filterFrom} onChange={(e) => setFilterFrom(e.target.value)} />
+                        <input type="date" value={filterTo} onChange={(e) => setFilterTo(e.target.value)} />
+                        <input type="number" min="0" placeholder="Сумма от" value={filterMinTotal}
+                            onChange={(e) => setFilterMinTotal(e.target.value)} />
+                    </div>
                 )}
                 {orderStatusError && (
                     <div className="admin-orders-errors-container">
@@ -137,53 +194,56 @@ function AdminOrders() {
                     </div>
                 )}
                 {isOnline && (
-                    filteredOrders.length === 0 ? (
+                    orders.length === 0 ? (
                         <p className="admin-p">Заказы отсутствуют</p>
                     ) : (
-                        <table className="admin-orders-table">
-                            <thead>
-                                <tr>
-                                    <th className="admin-th">ID</th>
-                                    <th className="admin-th">Пользователь</th>
-                                    <th className="admin-th">Сумма</th>
-                                    <th className="admin-th">Статус</th>
-                                    <th className="admin-th">Время обновления</th>
-                                    <th className="admin-th">Действия</th>
-                                </tr>
-                            </thead>
-                            <tbody>
-                                {filteredOrders.map(order => (
-                                    <tr key={order.id}>
-                                        <td className="admin-td">{order.id}</td>
-                                        <td className="admin-td">{order.user.email}</td>
-                                        {order.finalPrice !== null ? (
-                                            <td className="admin-td">{order.finalPrice.toFixed(2)} ₽</td>
-                                        ): (
-                                            <td className="admin-td">{order.orderItems.reduce((total, item) => total + item.price, 0).toFixed(2)} ₽</td>
-                                        )}
-                                        <td className="admin-td">
-                                            <select value={order.status} onChange={(e) => handleStatusChange(order.id, e.target.value)}>
-                                                <option value="PROCESSING">В обработке</option>
-                                                <option value="SENT">Отправлен</option>
-                                                <option value="DELIVERED">Доставлен</option>
-                                                <option value="CANCELLED">Отменен</option>
-                                            </select>
-                                        </td>
-                                        <td className="admin-td">{formatDate(order.updatedAt)}</td>
-                                        <td className="admin-td">
-                                            {order.status === "PROCESSING" || order.status === "CANCELLED" ? (
-                                                <button className="delete"
-                                                    onClick={() => setShowDeleteOrderModal({ isOpen: true, orderId: order.id })}>
-                                                    Удалить
-                                                </button>
-                                            ) : (
-                                                "-"
-                                            )}
-                                        </td>
+                        <>
+                            <table className="admin-orders-table">
+                                <thead>
+                                    <tr>
+                                        <th className="admin-th">ID</th>
+                                        <th className="admin-th">Пользователь</th>
+                                        <th className="admin-th">Сумма</th>
+                                        <th className="admin-th">Статус</th>
+                                        <th className="admin-th">Время обновления</th>
+                                        <th className="admin-th">Действия</th>
                                     </tr>
-                                ))}
-                            </tbody>
-                        </table>
+                                </thead>
+                                <tbody>
+                                    {orders.map(order => (
+                                        <tr key={order.id}>
+                                            <td className="admin-td">{order.id}</td>
+                                            <td className="admin-td">{order.userEmail}</td>
+                                            <td className="admin-td">{order.total.toFixed(2)} ₽</td>
+                                            <td className="admin-td">
+                                                <select value={order.status} onChange={(e) => handleStatusChange(order.id, e.target.value)}>
+                                                    <option value="PROCESSING">В обработке</option>
+                                                    <option value="SENT">Отправлен</option>
+                                                    <option value="DELIVERED">Доставлен</option>
+                                                    <option value="CANCELLED">Отменен</option>
+                                                </select>
+                                            </td>
+                                            <td className="admin-td">{formatDate(order.updatedAt)}</td>
+                                            <td className="admin-td">
+                                                {order.status === "PROCESSING" || order.status === "CANCELLED" ? (
+                                                    <button className="delete"
+                                                        onClick={() => setShowDeleteOrderModal({ isOpen: true, orderId: order.id })}>
+                                                        Удалить
+                                                    </button>
+                                                ) : (
+                                                    "-"
+                                                )}
+                                            </td>
+                                        </tr>
+                                    ))}
+                                </tbody>
+                            </table>
+                            {nextCursor && (
+                                <button className="admin-orders-more" onClick={handleLoadMore} disabled={loadingMore}>
+                                    {loadingMore ? "Загрузка..." : "Показать еще"}
+                                </button>
+                            )}
+                        </>
                     ))}
             </div>
             {showDeleteOrderModal.isOpen && (
@@ -79,6 +79,11 @@ function AdminProducts() {
             ? `${API_URL}/admin/products/${editingProduct.id}`
             : `${API_URL}/admin/products/create`;
 
+        // При правке отправляем разницу остатка: продажи за время редактирования не затираются
+        const payload = editingProduct
+            ? { ...formData, stockDelta: Number(formData.stockQuantity) - Number(editingProduct.stockQuantity) }
+            : formData;
+
         try {
             const response = await fetch(url, {
                 method,
@@ -86,7 +91,7 @@ function AdminProducts() {
                     "Content-Type": "application/json",
                     "Authorization": `Bearer ${token}`
                 },
-                body: JSON.stringify(formData),
+                body: JSON.stringify(payload),
             });
 
             if (response.ok) {
@@ -103,6 +108,9 @@ function AdminProducts() {
                 const message = editingProduct ? "Товар обновлен" : "Товар добавлен";
                 setNotification(message);
 
+                setTimeout(() => setNotification(""), 4000);
+            } else if (response.status === 409) {
+                setNotification(await response.text());
                 setTimeout(() => setNotification(""), 4000);
             } else {
                 console.error("Ошибка сохранения товара");
@@ -155,6 +163,7 @@ function AdminProducts() {
             stockQuantity: product.stockQuantity,
             image: product.image,
             categoryId: product.category?.id || "",
+            version: product.version,
         });
         setShowForm(true);
     };
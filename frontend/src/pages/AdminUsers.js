@@ -72,7 +72,7 @@ function AdminUsers() {
                     if (!productResponse) throw new Error();
                     const product = await productResponse.json();
 
-                    return { ...review, productName: product.name, image: product.image || null };
+                    return { ...review, productName: product.name, image: product.images?.thumbnail || product.image || null };
                 } catch (error) {
                     return { ...review, productName: "Неизвестный товар", image: null };
                 }
@@ -6,7 +6,7 @@ import { createPortal } from "react-dom";
 import { useNavigate } from "react-router-dom";
 
 function Cart() {
-    const { cart, setCart } = useCart();
+    const { cart, setCart, updateCart } = useCart();
     const { token } = useAuth();
     const API_URL = process.env.REACT_APP_API_URL;
     const [order, setOrder] = useState(null);
@@ -101,6 +101,8 @@ function Cart() {
                         }, 4000);
                     }
                 }
+                // Счетчик в шапке берется из сводки корзины
+                updateCart(token);
             } else {
                 console.error("Ошибка загрузки корзины");
             }
@@ -112,7 +114,7 @@ function Cart() {
                 setIsInitialLoad(false);
             }
         }
-    }, [API_URL, token, setCart]);
+    }, [API_URL, token, setCart, updateCart]);
 
     useEffect(() => {
         fetchCart(true);
@@ -132,6 +134,7 @@ function Cart() {
             if (response.ok) {
                 setCart([]);
                 setOrder(null);
+                updateCart(token);
                 setNotification("Заказ оформлен");
 
                 setTimeout(() => { navigate("/orders") }, 2000);
@@ -160,6 +163,7 @@ function Cart() {
             if (response.ok) {
                 setCart([]);
                 setOrder(null);
+                updateCart(token);
                 setNotification("Корзина очищена");
 
                 setTimeout(() => setNotification(""), 4000);
@@ -262,7 +266,7 @@ function Cart() {
                     <div className="product-grid">
                         {cart.map(item => (
                             <div key={item.product.id} className="product-card">
-                                <img src={item.product.image} alt={item.product.name} />
+                                <img src={item.product.imageThumbnail || item.product.image} alt={item.product.name} />
                                 <h3>{item.product.name}</h3>
                                 <p>
                                     {(item.oldPrice && item.oldPrice > item.newTotalPrice) ? (
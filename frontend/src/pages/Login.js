@@ -27,25 +27,6 @@ function Login() {
         }
     }, [user, navigate, location]);
 
-    const fetchOrders = async (token) => {
-        try {
-            const response = await fetch(`${process.env.REACT_APP_API_URL}/orders/user`, {
-                headers: {
-                    "Authorization": `Bearer ${token}`,
-                },
-                credentials: "include",
-            });
-
-            if (response.ok) {
-                await response.json();
-            } else {
-                console.error("Ошибка загрузки заказов");
-            }
-        } catch (error) {
-            console.error("Ошибка загрузки заказов:", error);
-        }
-    };
-
     const togglePasswordVisibility = (field) => {
         setPasswordVisible((prev) => ({ ...prev, [field]: !prev[field] }));
     };
@@ -66,12 +47,11 @@ function Login() {
                 const data = await response.json();
 
                 if (data.token && data.id && data.role) {
-                    login({ id: data.id, email, token: data.token, role: data.role, name: data.name });
+                    login({ id: data.id, email, token: data.token, refreshToken: data.refreshToken, role: data.role, name: data.name });
 
                     if (data.role === "ADMIN") {
                         setNotification("Администратор, добро пожаловать!")
                     } else {
-                        fetchOrders(data.token);
                         setNotification(`Вход выполнен, здравствуйте ${data.name}!`);
                     }
 
@@ -23,6 +23,8 @@ function Orders() {
     });
     const [notification, setNotification] = useState("");
     const [loading, setLoading] = useState(true);
+    const [nextCursor, setNextCursor] = useState(null);
+    const [loadingMore, setLoadingMore] = useState(false);
     const [isOnline, setIsOnline] = useState(navigator.onLine);
 
     useEffect(() => {
@@ -45,9 +47,28 @@ function Orders() {
         }));
     };
 
+    const fetchOrdersPage = useCallback(async (cursor) => {
+        const params = new URLSearchParams({ size: "20" });
+        if (cursor) params.set("cursor", cursor);
+
+        const response = await fetch(`${API_URL}/orders/user?${params}`, {
+            headers: {
+                "Content-Type": "application/json",
+                Authorization: `Bearer ${token}`,
+            },
+            credentials: "include",
+        });
+        if (!response.ok) {
+            throw new Error(`HTTP ${response.status}`);
+        }
+        return response.json();
+    }, [API_URL, token]);
+
+    // После изменений история перечитывается с первой страницы
     const fetchOrders = useCallback(async () => {
         if (!token) {
             setOrders([]);
+            setNextCursor(null);
             setLoading(false);
             return;
         }
@@ -55,32 +76,29 @@ function Orders() {
         setLoading(true);
 
         try {
-            const response = await fetch(`${API_URL}/orders/user`, {
-                headers: {
-                    "Content-Type": "application/json",
-                    Authorization: `Bearer ${token}`,
-                },
-                credentials: "include",
-            });
-
-            if (response.ok) {
-                const data = await response.json();
-
-                const ordersList = data.map(o => ({
-                    ...o.order,
-                    orderAmount: o.orderAmount
-                }));
-
-                setOrders(ordersList);
-            } else {
-                console.error("Ошибка загрузки заказов");
-            }
+            const page = await fetchOrdersPage(null);
+            setOrders(page.items);
+            setNextCursor(page.nextCursor);
         } catch (error) {
             console.error("Ошибка загрузки заказов: ", error);
         } finally {
             setLoading(false);
         }
-    }, [API_URL, token]);
+    }, [fetchOrdersPage, token]);
+
+    const loadMoreOrders = async () => {
+        if (!nextCursor || loadingMore) return;
+        setLoadingMore(true);
+        try {
+            const page = await fetchOrdersPage(nextCursor);
+            setOrders(prev => [...prev, ...page.items]);
+            setNextCursor(page.nextCursor);
+        } catch (error) {
+            console.error("Ошибка загрузки заказов: ", error);
+        } finally {
+            setLoadingMore(false);
+        }
+    };
 
     useEffect(() => {
         fetchOrders();
@@ -249,9 +267,6 @@ function Orders() {
         );
     }
 
-    const getTotalAmount = (items) =>
-        items.reduce((sum, item) => sum + (item.newTotalPrice || item.price), 0);
-
     return (
         <>
             <div className="orders-container">
@@ -263,7 +278,7 @@ function Orders() {
                 ) : (
                     <ul className="orders-list">
                         {orders?.map(order => {
-                            const totalAmount = getTotalAmount(order.orderItems);
+                            const totalAmount = order.itemsTotal;
 
                             return (
                                 <li key={order.id} className="order-item">
@@ -284,13 +299,7 @@ function Orders() {
                                                 <strong>Общая сумма заказа: {order.finalPrice.toFixed(2)} ₽</strong>
                                             )
                                         ) : (
-                                            <strong>
-                                                Общая сумма заказа:{" "}
-                                                {order.orderItems.reduce(
-                                                    (total, item) => total + (item.newTotalPrice || item.price * item.quantity),
-                                                    0
-                                                ).toFixed(2)} ₽
-                                            </strong>
+                                            <strong>Общая сумма заказа: {totalAmount.toFixed(2)} ₽</strong>
                                         )}
                                     </span>
 
@@ -332,20 +341,20 @@ function Orders() {
 
                                     {expandedOrders[order.id] && (
                                         <div className="product-grid">
-                                            {order.orderItems.map(item => (
-                                                <div key={`${order.id}-${item.product.id}`} className="product-card">
-                                                    <img src={item.product.image} alt={item.product.name} />
-                                                    <h3>{item.product.name}</h3>
+                                            {order.items.map(item => (
+                                                <div key={`${order.id}-${item.productId}`} className="product-card">
+                                                    <img src={item.image} alt={item.productName} />
+                                                    <h3>{item.productName}</h3>
                                                     <p>{item.price} ₽</p>
                                                     <p>Количество: {item.quantity} шт.</p>
 
                                                     {order.status === "DELIVERED" && (
-                                                        item.product.review ? (
+                                                        item.review ? (
                                                             <div className="review-section">
                                                                 <p><strong>Ваш отзыв:</strong></p>
-                                                                <p>Рейтинг: ⭐{item.product.review.rating}⭐</p>
-                                                                <p className={item.product.review.comment ? "comment" : "no-comment"}>
-                                                                    {item.product.review.comment || "Комментарий отсутствует"}
+                                                                <p>Рейтинг: ⭐{item.review.rating}⭐</p>
+                                                                <p className={item.review.comment ? "comment" : "no-comment"}>
+                                                                    {item.review.comment || "Комментарий отсутствует"}
                                                                 </p>
                                                                 <button
                                                                     className="delete-review-button"
@@ -354,7 +363,7 @@ function Orders() {
                                                                         message: "Вы уверены, что хотите удалить этот отзыв?",
                                                                         confirmText: "Удалить отзыв",
                                                                         onConfirm: deleteReview,
-                                                                        id: item.product.id
+                                                                        id: item.productId
                                                                     })}
                                                                 >
                                                                     Удалить отзыв
@@ -363,7 +372,7 @@ function Orders() {
                                                         ) : (
                                                             <button
                                                                 className="add-review-button"
-                                                                onClick={() => setReviewModal({ isOpen: true, product: item.product })}
+                                                                onClick={() => setReviewModal({ isOpen: true, product: { id: item.productId, name: item.productName } })}
                                                             >
                                                                 Оставить отзыв
                                                             </button>
@@ -379,6 +388,12 @@ function Orders() {
                     </ul>
                 )}
 
+                {isOnline && nextCursor && (
+                    <button className="details-button" onClick={loadMoreOrders} disabled={loadingMore}>
+                        {loadingMore ? "Загрузка..." : "Показать еще"}
+                    </button>
+                )}
+
                 {reviewModal.isOpen && createPortal(
                     <div className="review-modal">
                         <div className="modal-content">
@@ -257,7 +257,7 @@ function Profile() {
                 if (!response.ok) throw new Error();
                 const product = await response.json();
 
-                return { ...review, productName: product.name, image: product.image || null };
+                return { ...review, productName: product.name, image: product.images?.thumbnail || product.image || null };
             } catch {
                 return { ...review, productName: "Неизвестный товар", image: null };
             }
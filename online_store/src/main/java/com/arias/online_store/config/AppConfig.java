@@ -1,14 +1,21 @@
 package com.arias.online_store.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
 
 @Configuration
 public class AppConfig {
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    @Bean(destroyMethod = "shutdown")
+    public BoundedPasswordEncoder passwordEncoder(
+            @Value("${store.auth.hashing.threads:0}") int threads,
+            @Value("${store.auth.hashing.queue-capacity:32}") int queueCapacity,
+            @Value("${store.auth.hashing.timeout:PT5S}") Duration timeout) {
+        // По умолчанию половина ядер, чтобы каталог и заказы не оставались без процессора
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), poolSize, queueCapacity, timeout);
     }
 }
@@ -0,0 +1,50 @@
+package com.arias.online_store.config;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+// Принцип аутентифицированного запроса: собирается один раз при загрузке учетной записи
+// и несет все, что контроллерам нужно знать о пользователе без обращения к базе
+@Getter
+public class AuthenticatedUser implements UserDetails {
+
+    private final Integer id;
+    private final String email;
+    private final String passwordHash;
+    private final String role;
+    private final boolean blocked;
+    private final List<GrantedAuthority> authorities;
+
+    public AuthenticatedUser(Integer id, String email, String passwordHash, String role, boolean blocked) {
+        this.id = id;
+        this.email = email;
+        this.passwordHash = passwordHash;
+        this.role = role;
+        this.blocked = blocked;
+        this.authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role));
+    }
+
+    public boolean isAdmin() {
+        return "ADMIN".equals(role);
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return passwordHash;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+}
@@ -1,15 +1,20 @@
 package com.arias.online_store.config;
 
+import com.arias.online_store.service.TokenRevocationService;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.time.Duration;
 import java.util.Date;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.UUID;
 
 @Component
 public class JwtUtil {
@@ -20,44 +25,57 @@ public class JwtUtil {
             "HsGGm9llvkyvf/y0lA67viy9WPNcPIzn8W3+oXW/wxIIOq4VH1KUg8SXdqyJQUI86tqu6O\n" +
             "0cAfI3zhFN+htD1nxPphrr2XchnP6gU/n2Na0=";
     private static final Key SECRET_KEY = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+    // Парсер неизменяем и потокобезопасен, собирать его на каждый токен не нужно
+    private static final JwtParser PARSER = Jwts.parserBuilder().setSigningKey(SECRET_KEY).build();
 
-    private final Set<String> revokedTokens = new HashSet<>();
+    private final TokenRevocationService tokenRevocationService;
+    // Короткий срок держит список отозванных токенов маленьким; продление идет через refresh-токен
+    private final Duration accessTokenTtl;
+
+    @Autowired
+    public JwtUtil(TokenRevocationService tokenRevocationService,
+                   @Value("${store.auth.access-token-ttl:PT15M}") Duration accessTokenTtl) {
+        this.tokenRevocationService = tokenRevocationService;
+        this.accessTokenTtl = accessTokenTtl;
+    }
+
+    public Duration getAccessTokenTtl() {
+        return accessTokenTtl;
+    }
 
     public String generateToken(String email, String role) {
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(email)
                 .claim("role", role)
                 .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10))
+                .setExpiration(new Date(System.currentTimeMillis() + accessTokenTtl.toMillis()))
                 .signWith(SECRET_KEY)
                 .compact();
     }
 
-    public String extractEmail(String token) {
-        return getClaims(token).getSubject();
+    // Проверяет подпись и срок действия один раз; при невалидном токене бросает JwtException
+    public Claims parseToken(String token) {
+        return PARSER.parseClaimsJws(token).getBody();
     }
 
-    public String extractRole(String token) {
-        return getClaims(token).get("role", String.class);
-    }
-
-    public boolean validateToken(String token, String userEmail) {
-        return userEmail.equals(extractEmail(token)) && !isTokenExpired(token) && !revokedTokens.contains(token);
+    public boolean isRevoked(Claims claims, String token) {
+        return tokenRevocationService.isRevoked(revocationKey(claims, token));
     }
 
     public void revokeToken(String token) {
-        revokedTokens.add(token);
-    }
-
-    private Claims getClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(SECRET_KEY)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        Claims claims;
+        try {
+            claims = parseToken(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            // Невалидный или уже истекший токен отзывать не нужно
+            return;
+        }
+        tokenRevocationService.revoke(revocationKey(claims, token), claims.getExpiration().toInstant());
     }
 
-    private boolean isTokenExpired(String token) {
-        return getClaims(token).getExpiration().before(new Date());
+    // У токенов, выданных до появления jti, ключом служит подпись
+    private String revocationKey(Claims claims, String token) {
+        return claims.getId() != null ? claims.getId() : token.substring(token.lastIndexOf('.') + 1);
     }
 }
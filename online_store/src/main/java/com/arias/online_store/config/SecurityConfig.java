@@ -8,6 +8,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -16,6 +17,7 @@ import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @Configuration
+@EnableMethodSecurity
 @Getter
 public class SecurityConfig {
 
@@ -33,10 +35,10 @@ public class SecurityConfig {
                 .csrf(AbstractHttpConfigurer::disable)
                 .cors(Customizer.withDefaults())
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/auth/register", "/auth/login", "/auth/logout").permitAll()
+                        .requestMatchers("/auth/register", "/auth/login", "/auth/refresh", "/auth/logout").permitAll()
                         .requestMatchers("/products/user/**", "/categories/without", "/categories/full",
                                 "/uploads/**", "/reviews/{productId}", "/achievements").permitAll()
-                        .requestMatchers("/user/update", "/user/email", "/user/password", "/orders/user",
+                        .requestMatchers("/user/update", "/user/email", "/user/password", "/orders/user", "/orders/user/**",
                                 "/orders/sent", "/orders/items/**",
                                 "/orders/cancel/{orderId}", "/orders/{orderId}", "/reviews/user",
                                 "/reviews/product/**", "/user/{id}", "/user/achievements")
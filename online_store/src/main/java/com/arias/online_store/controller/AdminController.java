@@ -1,63 +1,65 @@
 package com.arias.online_store.controller;
 
-import com.arias.online_store.config.JwtUtil;
+import com.arias.online_store.dto.AdminOrderPageDTO;
+import com.arias.online_store.dto.OrderStatsDTO;
 import com.arias.online_store.dto.OrderStatusUpdateRequest;
 import com.arias.online_store.dto.ProductRequest;
+import com.arias.online_store.dto.SalesGroupBy;
+import com.arias.online_store.dto.SalesPointDTO;
 import com.arias.online_store.entity.*;
-import com.arias.online_store.repository.OrderRepository;
 import com.arias.online_store.repository.ProductRepository;
 import com.arias.online_store.repository.UserRepository;
 import com.arias.online_store.service.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 
+// Доступ проверяется по полномочиям, которые установил JwtAuthenticationFilter
 @RestController
 @RequestMapping("/admin")
+@PreAuthorize("hasRole('ADMIN')")
 public class AdminController {
     private final ProductService productService;
     private final CategoryService categoryService;
     private final OrderService orderService;
-    private final JwtUtil jwtUtil;
     private final ReviewService reviewService;
     private final UserService userService;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
-    private final OrderRepository orderRepository;
+    private final OrderStatsService orderStatsService;
+    private final SalesRollupService salesRollupService;
+    private final AchievementRegistry achievementRegistry;
 
     @Autowired
     public AdminController(ProductService productService, CategoryService categoryService, OrderService orderService,
-                           JwtUtil jwtUtil, ReviewService reviewService, UserService userService,
+                           ReviewService reviewService, UserService userService,
                            ProductRepository productRepository, UserRepository userRepository,
-                           OrderRepository orderRepository) {
+                           OrderStatsService orderStatsService, SalesRollupService salesRollupService,
+                           AchievementRegistry achievementRegistry) {
         this.productService = productService;
         this.categoryService = categoryService;
         this.orderService = orderService;
-        this.jwtUtil = jwtUtil;
         this.reviewService = reviewService;
         this.userService = userService;
         this.productRepository = productRepository;
         this.userRepository = userRepository;
-        this.orderRepository = orderRepository;
-    }
-
-    private boolean isAdmin(String token) {
-        return jwtUtil.extractRole(token).equals("ADMIN");
+        this.orderStatsService = orderStatsService;
+        this.salesRollupService = salesRollupService;
+        this.achievementRegistry = achievementRegistry;
     }
 
     @PostMapping("/products/create")
-    public ResponseEntity<Product> createProduct(@RequestBody ProductRequest productRequest,
-                                                 @RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-
+    public ResponseEntity<Product> createProduct(@RequestBody ProductRequest productRequest) {
         Optional<Category> categoryOpt = categoryService.getCategoryById(productRequest.getCategoryId());
         if (categoryOpt.isEmpty()) {
             return ResponseEntity.badRequest().build();
@@ -77,21 +79,13 @@ public class AdminController {
 
     @PutMapping("/products/{id}")
     public ResponseEntity<Product> updateProduct(@PathVariable Integer id,
-                                                 @RequestBody ProductRequest productRequest,
-                                                 @RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-
+                                                 @RequestBody ProductRequest productRequest) {
         Optional<Product> updateProduct = productService.updateProduct(id, productRequest);
         return updateProduct.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/product/{id}")
-    public ResponseEntity<Map<String, String>> deleteProduct(@PathVariable Integer id,
-                                              @RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Нет прав для удаления"));
-
+    public ResponseEntity<Map<String, String>> deleteProduct(@PathVariable Integer id) {
         try {
             boolean deleted = productService.deleteProduct(id);
             return deleted ? ResponseEntity.noContent().build() : ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Товар не найден"));
@@ -101,80 +95,76 @@ public class AdminController {
     }
 
     @PostMapping("/category/create")
-    public ResponseEntity<?> createCategory(@RequestBody Category category,
-                                            @RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-
+    public ResponseEntity<?> createCategory(@RequestBody Category category) {
         Category savedCategory = categoryService.saveCategory(category);
         return savedCategory != null ? ResponseEntity.ok(savedCategory) : ResponseEntity.badRequest().build();
     }
 
     @PutMapping("/category/{id}")
-    public ResponseEntity<Category> updateCategory(@PathVariable Integer id, @RequestBody Category newCategory,
-                                                   @RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-
+    public ResponseEntity<Category> updateCategory(@PathVariable Integer id, @RequestBody Category newCategory) {
         Optional<Category> updatedCategory = categoryService.updateCategory(id, newCategory);
         return updatedCategory.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
     }
 
 //    Не используется
     @DeleteMapping("/category/{id}")
-    public ResponseEntity<Void> deleteCategory(@PathVariable Integer id,
-                                               @RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-
+    public ResponseEntity<Void> deleteCategory(@PathVariable Integer id) {
         boolean deleted = categoryService.deleteCategory(id);
         return deleted ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
     }
 
     @PutMapping("/orders/{id}/status")
     public ResponseEntity<?> updateOrderStatus(@PathVariable Integer id,
-                                                   @RequestBody OrderStatusUpdateRequest request,
-                                                   @RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Доступ запрещен");
-
+                                                   @RequestBody OrderStatusUpdateRequest request) {
         Order updatedOrder = orderService.updateOrderStatus(id, request.getStatus());
         return updatedOrder != null ? ResponseEntity.ok(updatedOrder) : ResponseEntity.badRequest().build();
     }
 
     @DeleteMapping("/orders/{orderId}")
-    public ResponseEntity<Order> deleteOrder(@PathVariable Integer orderId,
-                                             @RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-
+    public ResponseEntity<Order> deleteOrder(@PathVariable Integer orderId) {
         boolean deleted = orderService.deleteOrderByAdmin(orderId);
         return deleted ? ResponseEntity.noContent().build() : ResponseEntity.badRequest().build();
     }
 
     @GetMapping("/orders")
-    public ResponseEntity<List<Order>> getAllOrders(@RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-        return ResponseEntity.ok(orderService.getAllOrders());
+    public ResponseEntity<AdminOrderPageDTO> searchOrders(@RequestParam(required = false) String status,
+                                                          @RequestParam(required = false) Integer userId,
+                                                          @RequestParam(required = false) String email,
+                                                          @RequestParam(required = false)
+                                                          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                          @RequestParam(required = false)
+                                                          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                          @RequestParam(required = false) BigDecimal minTotal,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(defaultValue = "50") int size) {
+        OrderStatus orderStatus = null;
+        if (status != null && !status.isBlank()) {
+            try {
+                orderStatus = OrderStatus.valueOf(status.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+
+        return ResponseEntity.ok(orderService.searchOrders(orderStatus, userId, email, from, to, minTotal,
+                cursor, size));
     }
 
-    @GetMapping("/reviews/user/{userId}")
-    public ResponseEntity<List<Review>> getReviewsByUserAdmin(@RequestHeader("Authorization") String authHeader,
-                                                              @PathVariable Integer userId) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+    @GetMapping("/orders/{id}")
+    public ResponseEntity<Order> getOrderDetails(@PathVariable Integer id) {
+        return orderService.getOrderDetails(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
 
+    @GetMapping("/reviews/user/{userId}")
+    public ResponseEntity<List<Review>> getReviewsByUserAdmin(@PathVariable Integer userId) {
         return ResponseEntity.ok(reviewService.getReviewsByUser(userId));
     }
 
     @DeleteMapping("/reviews/{userId}/{productId}")
-    public ResponseEntity<Void> deleteReviewByAdmin(@RequestHeader("Authorization") String authHeader,
-                                                    @PathVariable Integer userId,
+    public ResponseEntity<Void> deleteReviewByAdmin(@PathVariable Integer userId,
                                                     @PathVariable Integer productId) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-
         reviewService.deleteReview(userId, productId);
         return ResponseEntity.noContent().build();
     }
@@ -185,53 +175,60 @@ public class AdminController {
     }
 
     @PutMapping("/users/{userId}/block")
-    public ResponseEntity<Void> toggleUserBlock(@RequestHeader("Authorization") String authHeader,
-                                                @PathVariable Integer userId) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-
+    public ResponseEntity<Void> toggleUserBlock(@PathVariable Integer userId) {
         userService.toggleUserBlock(userId);
         return ResponseEntity.noContent().build();
     }
 
-    @GetMapping("/stats/product-count")
-    public ResponseEntity<Long> getProductCount(@RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+    // Справочник достижений правится напрямую в базе, после правки его нужно перечитать
+    @PostMapping("/achievements/reload")
+    public ResponseEntity<Void> reloadAchievements() {
+        achievementRegistry.reload();
+        return ResponseEntity.noContent().build();
+    }
 
+    @GetMapping("/stats/product-count")
+    public ResponseEntity<Long> getProductCount() {
         long count = productRepository.count();
         return ResponseEntity.ok(count);
     }
 
     @GetMapping("/stats/users-count")
-    public ResponseEntity<Long> getUsersCount(@RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-
+    public ResponseEntity<Long> getUsersCount() {
         long count = userRepository.count();
         return ResponseEntity.ok(count);
     }
 
     @GetMapping("/stats/orders")
-    public ResponseEntity<Map<String, Object>> getOrderStats(@RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.replace("Bearer ", "");
-        if (!isAdmin(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-
-        Map<String, Object> stats = new HashMap<>();
-
-        stats.put("processing", orderRepository.countByStatus(OrderStatus.PROCESSING));
-        stats.put("sent", orderRepository.countByStatus(OrderStatus.SENT));
-        stats.put("delivered", orderRepository.countByStatus(OrderStatus.DELIVERED));
-        stats.put("cancelled", orderRepository.countByStatus(OrderStatus.CANCELLED));
+    public ResponseEntity<OrderStatsDTO> getOrderStats() {
+        return ResponseEntity.ok(orderStatsService.getStats());
+    }
 
-        BigDecimal totalSales = orderRepository.findByStatus(OrderStatus.DELIVERED)
-                .stream()
-                .flatMap(order -> order.getOrderItems().stream())
-                .map(OrderItem::getPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    @PostMapping("/stats/orders/rebuild")
+    public ResponseEntity<OrderStatsDTO> rebuildOrderStats() {
+        orderStatsService.rebuild();
+        return ResponseEntity.ok(orderStatsService.getStats());
+    }
 
-        stats.put("totalSales", totalSales);
+    @GetMapping("/stats/sales")
+    public ResponseEntity<List<SalesPointDTO>> getSales(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String groupBy) {
+        SalesGroupBy salesGroupBy;
+        try {
+            salesGroupBy = SalesGroupBy.valueOf(groupBy.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(salesRollupService.getSales(from, to, salesGroupBy));
+    }
 
-        return ResponseEntity.ok(stats);
+    // Пересборка идет в фоне; повторный запрос во время работы ничего не запускает
+    @PostMapping("/stats/sales/backfill")
+    public ResponseEntity<Void> backfillSales() {
+        return salesRollupService.startBackfill()
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.status(HttpStatus.CONFLICT).build();
     }
 }
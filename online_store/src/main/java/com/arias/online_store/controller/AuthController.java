@@ -1,11 +1,16 @@
 package com.arias.online_store.controller;
 
+import com.arias.online_store.config.AuthenticatedUser;
 import com.arias.online_store.config.JwtUtil;
 import com.arias.online_store.dto.LoginRequest;
+import com.arias.online_store.dto.RefreshTokenRequest;
 import com.arias.online_store.dto.RegisterRequest;
 import com.arias.online_store.entity.Admin;
 import com.arias.online_store.entity.User;
 import com.arias.online_store.repository.AdminRepository;
+import com.arias.online_store.service.AuthRateLimiter;
+import com.arias.online_store.service.RefreshTokenService;
+import com.arias.online_store.service.UserPrincipalCache;
 import com.arias.online_store.service.UserService;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -19,8 +24,10 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -34,18 +41,28 @@ public class AuthController {
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtil;
     private final AdminRepository adminRepository;
+    private final AuthRateLimiter authRateLimiter;
+    private final RefreshTokenService refreshTokenService;
+    private final UserPrincipalCache userPrincipalCache;
 
     public AuthController(UserService userService, AuthenticationManager authenticationManager,
-                          PasswordEncoder passwordEncoder, JwtUtil jwtUtil, AdminRepository adminRepository) {
+                          PasswordEncoder passwordEncoder, JwtUtil jwtUtil, AdminRepository adminRepository,
+                          AuthRateLimiter authRateLimiter, RefreshTokenService refreshTokenService,
+                          UserPrincipalCache userPrincipalCache) {
         this.userService = userService;
         this.authenticationManager = authenticationManager;
         this.passwordEncoder = passwordEncoder;
         this.jwtUtil = jwtUtil;
         this.adminRepository = adminRepository;
+        this.authRateLimiter = authRateLimiter;
+        this.refreshTokenService = refreshTokenService;
+        this.userPrincipalCache = userPrincipalCache;
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest request) {
+    public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest request, HttpServletRequest httpRequest) {
+        authRateLimiter.check(httpRequest.getRemoteAddr(), request.getEmail());
+
         if (userService.getUserByEmail(request.getEmail()).isPresent()) {
             return ResponseEntity.badRequest().body("Email уже используется");
         }
@@ -62,7 +79,10 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<Map<String, String>> login(@RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<Map<String, String>> login(@RequestBody LoginRequest loginRequest,
+                                                     HttpServletRequest httpRequest) {
+        authRateLimiter.check(httpRequest.getRemoteAddr(), loginRequest.getEmail());
+
         try {
             Authentication authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword())
@@ -83,18 +103,52 @@ public class AuthController {
 
             Map<String, String> response = new HashMap<>();
             response.put("token", token);
+            response.put("refreshToken", refreshTokenService.issue(userDetails.getUsername()));
+            response.put("expiresIn", String.valueOf(jwtUtil.getAccessTokenTtl().toSeconds()));
             response.put("id", String.valueOf(id));
             response.put("role", role);
             if (role.equals("USER")) response.put("name", userOpt.get().getName());
 
             return ResponseEntity.ok(response);
+        } catch (ResponseStatusException e) {
+            // Перегрузка пула хеширования должна дойти до клиента как 429, а не как неверный пароль
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Неверный логин или пароль"));
         }
     }
 
+    // Продление сессии без пароля: ни bcrypt, ни поиска по двум таблицам учетных записей
+    @PostMapping("/refresh")
+    public ResponseEntity<Map<String, String>> refresh(@Valid @RequestBody RefreshTokenRequest request) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(request.getRefreshToken());
+
+        AuthenticatedUser user;
+        try {
+            user = (AuthenticatedUser) userPrincipalCache.get(rotation.getSubject());
+        } catch (UsernameNotFoundException e) {
+            refreshTokenService.revokeFamily(rotation.getRefreshToken());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Пользователь не найден"));
+        }
+        if (user.isBlocked()) {
+            refreshTokenService.revokeFamily(rotation.getRefreshToken());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Аккаунт заблокирован"));
+        }
+
+        Map<String, String> response = new HashMap<>();
+        response.put("token", jwtUtil.generateToken(user.getEmail(), user.getRole()));
+        response.put("refreshToken", rotation.getRefreshToken());
+        response.put("expiresIn", String.valueOf(jwtUtil.getAccessTokenTtl().toSeconds()));
+        return ResponseEntity.ok(response);
+    }
+
     @PostMapping("/logout")
-    public ResponseEntity<String> logout(HttpServletRequest request, HttpServletResponse response) {
+    public ResponseEntity<String> logout(@RequestBody(required = false) RefreshTokenRequest refreshRequest,
+                                         HttpServletRequest request, HttpServletResponse response) {
+        if (refreshRequest != null) {
+            refreshTokenService.revokeFamily(refreshRequest.getRefreshToken());
+        }
+
         String authHeader = request.getHeader("Authorization");
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
@@ -1,6 +1,7 @@
 package com.arias.online_store.controller;
 
 import com.arias.online_store.dto.CategoryDTO;
+import com.arias.online_store.dto.CategoryWithProductsDTO;
 import com.arias.online_store.entity.Category;
 import com.arias.online_store.service.CategoryService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,8 +35,8 @@ public class CategoryController {
     }
 
     @GetMapping("/full")
-    public ResponseEntity<List<Category>> getAllCategoriesWithProducts() {
-        List<Category> categories = categoryService.getAllCategoriesWithProducts();
+    public ResponseEntity<List<CategoryWithProductsDTO>> getAllCategoriesWithProducts() {
+        List<CategoryWithProductsDTO> categories = categoryService.getAllCategoriesWithProducts();
         return ResponseEntity.ok(categories);
     }
 }
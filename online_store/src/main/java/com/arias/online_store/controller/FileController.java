@@ -1,49 +1,68 @@
 package com.arias.online_store.controller;
 
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import com.arias.online_store.service.FileServingService;
+import com.arias.online_store.service.ImageVariantService;
+import com.arias.online_store.service.UploadStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.Collections;
 import java.util.Map;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/uploads")
 public class FileController {
 
-    private final Path fileStorageLocation = Paths.get("uploads").toAbsolutePath().normalize();
+    private final FileServingService fileServingService;
+    private final ImageVariantService imageVariantService;
+    private final UploadStorageService uploadStorageService;
 
-    public FileController() throws IOException {
-        Files.createDirectories(fileStorageLocation);
+    @Autowired
+    public FileController(FileServingService fileServingService, ImageVariantService imageVariantService,
+                          UploadStorageService uploadStorageService) {
+        this.fileServingService = fileServingService;
+        this.imageVariantService = imageVariantService;
+        this.uploadStorageService = uploadStorageService;
     }
 
+    // Старые загрузки лежат в корне каталога под именами UUID_имя
     @GetMapping("/{fileName}")
-    public Resource getFile(@PathVariable String fileName) throws MalformedURLException {
-        Path filePath = fileStorageLocation.resolve(fileName).normalize();
-        return new UrlResource(filePath.toUri());
+    public void getFile(@PathVariable String fileName, HttpServletRequest request,
+                        HttpServletResponse response) throws IOException {
+        serve(fileName, request, response);
+    }
+
+    @GetMapping("/{shard1}/{shard2}/{fileName}")
+    public void getStoredFile(@PathVariable String shard1, @PathVariable String shard2, @PathVariable String fileName,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serve(shard1 + "/" + shard2 + "/" + fileName, request, response);
     }
 
     @PostMapping("/upload")
     public ResponseEntity<Map<String, String>> uploadFile(@RequestParam("file") MultipartFile file) {
         try {
-            String fileName = UUID.randomUUID() + "_" + file.getOriginalFilename();
-            Path targetLocation = fileStorageLocation.resolve(fileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-
-            String fileUrl = "http://localhost:8080/uploads/" + fileName;
+            String fileUrl = uploadStorageService.urlOf(uploadStorageService.store(file));
+            imageVariantService.submit(fileUrl);
             return ResponseEntity.ok(Collections.singletonMap("url", fileUrl));
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Collections.singletonMap("error", "Ошибка загрузки файла"));
         }
     }
+
+    private void serve(String key, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Не выпускаем запрос за пределы каталога загрузок
+        Path filePath = uploadStorageService.resolve(key);
+        if (filePath == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        fileServingService.serve(filePath, request, response);
+    }
 }
@@ -1,32 +1,36 @@
 package com.arias.online_store.controller;
 
+import com.arias.online_store.config.AuthenticatedUser;
+import com.arias.online_store.dto.CartSummaryDTO;
+import com.arias.online_store.dto.CartUpdateRequest;
+import com.arias.online_store.dto.OrderHistoryPageDTO;
 import com.arias.online_store.entity.*;
-import com.arias.online_store.service.AchievementService;
+import com.arias.online_store.service.CartSummaryService;
+import com.arias.online_store.service.LoyaltyPricingEngine;
 import com.arias.online_store.service.OrderService;
-import com.arias.online_store.service.UserService;
+import com.arias.online_store.service.PriceBreakdown;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/orders")
 public class OrderController {
     private final OrderService orderService;
-    private final UserService userService;
-    private final AchievementService achievementService;
+    private final CartSummaryService cartSummaryService;
+    private final LoyaltyPricingEngine loyaltyPricingEngine;
 
     @Autowired
-    public OrderController(OrderService orderService, UserService userService, AchievementService achievementService) {
+    public OrderController(OrderService orderService, CartSummaryService cartSummaryService,
+                           LoyaltyPricingEngine loyaltyPricingEngine) {
         this.orderService = orderService;
-        this.userService = userService;
-        this.achievementService = achievementService;
+        this.cartSummaryService = cartSummaryService;
+        this.loyaltyPricingEngine = loyaltyPricingEngine;
     }
 
     @GetMapping("/{id}")
@@ -36,78 +40,52 @@ public class OrderController {
     }
 
     @GetMapping("/user")
-    public ResponseEntity<List<Map<String, Object>>> getOrdersByUser(@AuthenticationPrincipal UserDetails userDetails) {
-        System.out.println("userDetails: " + userDetails);
-        String email = userDetails.getUsername();
-        Optional<User> user = userService.getUserByEmail(email);
-
-        if (user.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-
-        List<Order> orders = orderService.getOrdersByUser(user.get());
-
-        List<Map<String, Object>> response = orders.stream().map(order -> {
-            Map<String, Object> map = new HashMap<>();
-            map.put("order", order);
-            map.put("finalPrice", order.getFinalPrice());
-            return map;
-        }).collect(Collectors.toList());
-
-        return ResponseEntity.ok(response);
+    public ResponseEntity<OrderHistoryPageDTO> getOrdersByUser(AuthenticatedUser user,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(orderService.getOrderHistory(user.getId(), cursor, size));
     }
 
     @GetMapping("/user/cart")
-    public ResponseEntity<Map<String, Object>> getCart(@AuthenticationPrincipal UserDetails userDetails) {
-        String email = userDetails.getUsername();
-        Optional<User> user = userService.getUserByEmail(email);
-
-        if (user.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-
-        Optional<Order> processingOrder = orderService.getProcessingOrderByUser(user.get());
+    public ResponseEntity<Map<String, Object>> getCart(AuthenticatedUser user) {
+        Optional<Order> processingOrder = orderService.getProcessingOrderByUser(user.getId());
         if (processingOrder.isEmpty()) {
             return ResponseEntity.ok().body(null);
         }
 
         Order order = processingOrder.get();
 
-        List<UserAchievement> activeBonuses = achievementService.getActiveBonuses(user.get());
-
-        String appliedBonusCode = getAppliedBonusCode(activeBonuses);
-
-        String appliedBonusTitle = null;
-        if (appliedBonusCode != null) {
-            appliedBonusTitle = activeBonuses.stream()
-                    .map(UserAchievement::getAchievement)
-                    .filter(ach -> appliedBonusCode.equals(ach.getConditionCode()))
-                    .map(Achievement::getTitle)
-                    .findFirst()
-                    .orElse(null);
-        }
+        PriceBreakdown pricing = loyaltyPricingEngine.price(user.getId(), order.getOrderItems());
 
         Map<String, Object> response = new HashMap<>();
         response.put("order", order);
-        response.put("appliedBonusCode", appliedBonusCode);
-        response.put("appliedBonusTitle", appliedBonusTitle);
+        response.put("subtotal", pricing.getSubtotal());
+        response.put("discount", pricing.getDiscount());
+        response.put("appliedBonusCode", pricing.getAppliedBonusCode());
+        response.put("appliedBonusTitle", pricing.getAppliedBonusTitle());
 
         return ResponseEntity.ok(response);
     }
 
-    private String getAppliedBonusCode(List<UserAchievement> bonuses) {
-        Map<String, BigDecimal> discountMap = Map.of(
-                "first_order", BigDecimal.valueOf(0.95),
-                "order_count_3", BigDecimal.valueOf(0.90),
-                "order_count_5", BigDecimal.valueOf(0.85)
-        );
-
-        return bonuses.stream()
-                .min(Comparator.comparing(
-                        bonus -> discountMap.getOrDefault(bonus.getAchievement().getConditionCode(), BigDecimal.ONE)
-                ))
-                .map(bonus -> bonus.getAchievement().getConditionCode())
-                .orElse(null);
+    // Совпадение If-None-Match с ETag Spring превращает в 304 без тела
+    @GetMapping("/user/cart/summary")
+    public ResponseEntity<CartSummaryDTO> getCartSummary(AuthenticatedUser user) {
+        CartSummaryService.CachedSummary cached = cartSummaryService.getSummary(user.getId());
+        return ResponseEntity.ok()
+                .eTag(cached.getEtag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(cached.getSummary());
+    }
+
+    @PatchMapping("/user/cart")
+    public ResponseEntity<Map<String, Object>> updateCart(AuthenticatedUser user,
+                                                          @Valid @RequestBody CartUpdateRequest request) {
+        Order updatedOrder = orderService.applyCartOperations(user.getId(), request.getOperations());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("order", updatedOrder);
+
+        return ResponseEntity.ok(response);
     }
 
     @PostMapping
@@ -121,19 +99,14 @@ public class OrderController {
     }
 
     @PostMapping("/items/{productId}")
-    public ResponseEntity<Order> addItemToOrder(@AuthenticationPrincipal UserDetails userDetails,
+    public ResponseEntity<Order> addItemToOrder(AuthenticatedUser user,
                                                 @PathVariable Integer productId) {
-        String email = userDetails.getUsername();
-        Optional<User> user = userService.getUserByEmail(email);
-        if (user.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-        Order updatedOrder = orderService.addItemToOrder(user.orElse(null), productId, 1);
+        Order updatedOrder = orderService.addItemToOrder(user.getId(), productId, 1);
         return updatedOrder != null ? ResponseEntity.ok(updatedOrder) : ResponseEntity.badRequest().build();
     }
 
     @PutMapping("/items/{productId}/{quantity}")
-    public ResponseEntity<?> addMultipleItemsToOrder(@AuthenticationPrincipal UserDetails userDetails,
+    public ResponseEntity<?> addMultipleItemsToOrder(AuthenticatedUser user,
                                                          @PathVariable Integer productId,
                                                          @PathVariable int quantity) {
 
@@ -141,15 +114,8 @@ public class OrderController {
             return ResponseEntity.badRequest().body("Количество должно быть больше 0");
         }
 
-        String email = userDetails.getUsername();
-        Optional<User> user = userService.getUserByEmail(email);
-
-        if (user.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Пользователь не найден");
-        }
-
         try {
-            Order updateOrder = orderService.updateItemQuantity(user.get(), productId, quantity);
+            Order updateOrder = orderService.updateItemQuantity(user.getId(), productId, quantity);
             Map<String, Object> response = new HashMap<>();
             response.put("order", updateOrder);
             return ResponseEntity.ok(response);
@@ -159,30 +125,16 @@ public class OrderController {
     }
 
     @DeleteMapping("/{orderId}")
-    public ResponseEntity<Void> deleteOrder(@AuthenticationPrincipal UserDetails userDetails,
+    public ResponseEntity<Void> deleteOrder(AuthenticatedUser user,
                                             @PathVariable Integer orderId) {
-        String email = userDetails.getUsername();
-        Optional<User> user = userService.getUserByEmail(email);
-
-        if (user.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-
-        boolean deleted = orderService.deleteOrder(user.get(), orderId);
+        boolean deleted = orderService.deleteOrder(user.getId(), orderId);
         return deleted ? ResponseEntity.noContent().build() : ResponseEntity.badRequest().build();
     }
 
     @DeleteMapping("/items/{productId}")
-    public ResponseEntity<Map<String, Object>> removeItemFromOrder(@AuthenticationPrincipal UserDetails userDetails,
+    public ResponseEntity<Map<String, Object>> removeItemFromOrder(AuthenticatedUser user,
                                                                    @PathVariable Integer productId) {
-        String email = userDetails.getUsername();
-        Optional<User> user = userService.getUserByEmail(email);
-
-        if (user.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-
-        Order updatedOrder = orderService.removeItemFromOrder(user.get(), productId);
+        Order updatedOrder = orderService.removeItemFromOrder(user.getId(), productId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("order", updatedOrder);
@@ -191,16 +143,9 @@ public class OrderController {
     }
 
     @PutMapping("/items/{productId}/decrease")
-    public ResponseEntity<Map<String, Object>> decreaseItemQuantity(@AuthenticationPrincipal UserDetails userDetails,
+    public ResponseEntity<Map<String, Object>> decreaseItemQuantity(AuthenticatedUser user,
                                                                     @PathVariable Integer productId) {
-        String email = userDetails.getUsername();
-        Optional<User> user = userService.getUserByEmail(email);
-
-        if (user.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-
-        Order updatedOrder = orderService.decreaseItemQuantity(user.get(), productId);
+        Order updatedOrder = orderService.decreaseItemQuantity(user.getId(), productId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("order", updatedOrder);
@@ -209,28 +154,15 @@ public class OrderController {
     }
 
     @PutMapping("/sent")
-    public ResponseEntity<Order> markOrderAsSent(@AuthenticationPrincipal UserDetails userDetails) {
-        String email = userDetails.getUsername();
-        Optional<User> user = userService.getUserByEmail(email);
-        if (user.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-
-        Order updatedOrder = orderService.markOrderAsSent(user.get());
+    public ResponseEntity<Order> markOrderAsSent(AuthenticatedUser user) {
+        Order updatedOrder = orderService.markOrderAsSent(user.getId());
         return updatedOrder != null ? ResponseEntity.ok(updatedOrder) : ResponseEntity.badRequest().build();
     }
 
     @PutMapping("/cancel/{orderId}")
-    public ResponseEntity<Order> cancelOrder(@AuthenticationPrincipal UserDetails userDetails,
+    public ResponseEntity<Order> cancelOrder(AuthenticatedUser user,
                                              @PathVariable Integer orderId) {
-        String email = userDetails.getUsername();
-        Optional<User> user = userService.getUserByEmail(email);
-
-        if (user.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-
-        Order cancelledOrder = orderService.cancelOrder(user.get(), orderId);
+        Order cancelledOrder = orderService.cancelOrder(user.getId(), orderId);
         return cancelledOrder != null ? ResponseEntity.ok(cancelledOrder) : ResponseEntity.badRequest().build();
     }
 
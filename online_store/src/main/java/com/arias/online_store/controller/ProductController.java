@@ -1,13 +1,17 @@
 package com.arias.online_store.controller;
 
 import com.arias.online_store.dto.ProductDTO;
+import com.arias.online_store.dto.ProductPageDTO;
+import com.arias.online_store.dto.ProductSort;
 import com.arias.online_store.entity.Product;
 import com.arias.online_store.service.ProductService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 @RestController
@@ -28,8 +32,8 @@ public class ProductController {
     }
 
     @GetMapping("user/category/{id}")
-    public ResponseEntity<List<Product>> getProductsByCategory(@PathVariable Integer id) {
-        List<Product> products = productService.getProductsByCategory(id);
+    public ResponseEntity<List<ProductDTO>> getProductsByCategory(@PathVariable Integer id) {
+        List<ProductDTO> products = productService.getProductsByCategory(id);
         return ResponseEntity.ok(products);
     }
 
@@ -38,4 +42,30 @@ public class ProductController {
         List<ProductDTO> products = productService.getAllProducts();
         return ResponseEntity.ok(products);
     }
+
+    @GetMapping("/user/search")
+    public ResponseEntity<List<ProductDTO>> searchProducts(@RequestParam("q") String query,
+                                                           @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(productService.searchProducts(query, limit));
+    }
+
+    @GetMapping("/user/page")
+    public ResponseEntity<ProductPageDTO> getProductPage(@RequestParam(required = false) Integer categoryId,
+                                                         @RequestParam(required = false) BigDecimal minPrice,
+                                                         @RequestParam(required = false) BigDecimal maxPrice,
+                                                         @RequestParam(defaultValue = "false") boolean inStock,
+                                                         @RequestParam(defaultValue = "id") String sort,
+                                                         @RequestParam(required = false) String cursor,
+                                                         @RequestParam(defaultValue = "24") int size) {
+        ProductSort productSort;
+        try {
+            productSort = ProductSort.valueOf(sort.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        ProductPageDTO page = productService.getProductPage(categoryId, minPrice, maxPrice, inStock,
+                productSort, cursor, size);
+        return ResponseEntity.ok(page);
+    }
 }
@@ -1,11 +1,14 @@
 package com.arias.online_store.controller;
 
+import com.arias.online_store.config.AuthenticatedUser;
 import com.arias.online_store.dto.AchievementWithBonusDTO;
 import com.arias.online_store.dto.ChangePasswordRequest;
 import com.arias.online_store.dto.UpdateProfileRequest;
 import com.arias.online_store.entity.User;
 import com.arias.online_store.service.AchievementService;
+import com.arias.online_store.service.AuthRateLimiter;
 import com.arias.online_store.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -22,11 +25,14 @@ public class UserController {
 
     private final UserService userService;
     private final AchievementService achievementService;
+    private final AuthRateLimiter authRateLimiter;
 
     @Autowired
-    public UserController(UserService userService, AchievementService achievementService) {
+    public UserController(UserService userService, AchievementService achievementService,
+                          AuthRateLimiter authRateLimiter) {
         this.userService = userService;
         this.achievementService = achievementService;
+        this.authRateLimiter = authRateLimiter;
     }
 
     @GetMapping("/email")
@@ -41,35 +47,24 @@ public class UserController {
     }
 
     @PutMapping("/update")
-    public ResponseEntity<?> updateProfile(@Valid @RequestBody UpdateProfileRequest request, Authentication authentication) {
-        String email = authentication.getName();
-        Optional<User> userOpt = userService.getUserByEmail(email);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            userService.updateUserProfile(user.getId(), request.getName(), request.getPhone(), request.getAddress());
+    public ResponseEntity<?> updateProfile(@Valid @RequestBody UpdateProfileRequest request, AuthenticatedUser user) {
+        if (userService.updateUserProfile(user.getId(), request.getName(), request.getPhone(), request.getAddress()).isPresent()) {
             return ResponseEntity.ok("Профиль обновлен");
         }
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Пользователь не найден");
     }
 
     @PutMapping("/password")
-    public ResponseEntity<String> changePassword(@Valid @RequestBody ChangePasswordRequest request, Authentication authentication) {
-        String email = authentication.getName();
-        userService.changePassword(email, request.getOldPassword(), request.getNewPassword());
+    public ResponseEntity<String> changePassword(@Valid @RequestBody ChangePasswordRequest request, AuthenticatedUser user,
+                                                 HttpServletRequest httpRequest) {
+        authRateLimiter.check(httpRequest.getRemoteAddr(), user.getEmail());
+        userService.changePassword(user.getId(), request.getOldPassword(), request.getNewPassword());
         return ResponseEntity.ok("Пароль изменен");
     }
 
     @GetMapping("/achievements")
-    public ResponseEntity<List<AchievementWithBonusDTO>> getUserAchievements(Authentication authentication) {
-        String email = authentication.getName();
-        Optional<User> userOpt = userService.getUserByEmail(email);
-
-        if (userOpt.isPresent()) {
-            Integer userId = userOpt.get().getId();
-            List<AchievementWithBonusDTO> achievements = achievementService.getUserAchievementsWithBonusInfo(userId);
-            return ResponseEntity.ok(achievements);
-        } else {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
+    public ResponseEntity<List<AchievementWithBonusDTO>> getUserAchievements(AuthenticatedUser user) {
+        List<AchievementWithBonusDTO> achievements = achievementService.getUserAchievementsWithBonusInfo(user.getId());
+        return ResponseEntity.ok(achievements);
     }
 }
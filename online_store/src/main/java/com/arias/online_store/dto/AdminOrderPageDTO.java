@@ -0,0 +1,18 @@
+package com.arias.online_store.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class AdminOrderPageDTO {
+    private List<AdminOrderSummaryDTO> items;
+    private String nextCursor;
+
+    public AdminOrderPageDTO(List<AdminOrderSummaryDTO> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+}
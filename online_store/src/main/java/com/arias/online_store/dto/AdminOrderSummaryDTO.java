@@ -0,0 +1,36 @@
+package com.arias.online_store.dto;
+
+import com.arias.online_store.entity.OrderStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Строка списка заказов в панели администратора: без позиций и связанных сущностей
+@Getter
+@Setter
+public class AdminOrderSummaryDTO {
+    private Integer id;
+    private Integer userId;
+    private String userName;
+    private String userEmail;
+    private OrderStatus status;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private BigDecimal total;
+    private long itemCount;
+
+    public AdminOrderSummaryDTO(Integer id, Integer userId, String userName, String userEmail, OrderStatus status,
+                                LocalDateTime createdAt, LocalDateTime updatedAt, BigDecimal total, Long itemCount) {
+        this.id = id;
+        this.userId = userId;
+        this.userName = userName;
+        this.userEmail = userEmail;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.total = total != null ? total : BigDecimal.ZERO;
+        this.itemCount = itemCount != null ? itemCount : 0;
+    }
+}
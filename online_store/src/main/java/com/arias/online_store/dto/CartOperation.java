@@ -0,0 +1,17 @@
+package com.arias.online_store.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class CartOperation {
+    @NotNull(message = "Укажите тип операции")
+    private CartOperationType type;
+
+    @NotNull(message = "Укажите товар")
+    private Integer productId;
+
+    private Integer quantity;
+}
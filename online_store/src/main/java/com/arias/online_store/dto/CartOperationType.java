@@ -0,0 +1,7 @@
+package com.arias.online_store.dto;
+
+public enum CartOperationType {
+    ADD,
+    SET,
+    REMOVE
+}
@@ -0,0 +1,30 @@
+package com.arias.online_store.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+// Сжатое представление корзины для карточек товаров и счетчика в шапке:
+// quantities - количество по id товара, itemCount - число разных товаров
+@Getter
+@Setter
+public class CartSummaryDTO {
+    private Integer orderId;
+    private Map<Integer, Integer> quantities;
+    private int itemCount;
+    private BigDecimal total;
+    private String appliedBonusCode;
+    private String appliedBonusTitle;
+
+    public CartSummaryDTO(Integer orderId, Map<Integer, Integer> quantities, BigDecimal total,
+                          String appliedBonusCode, String appliedBonusTitle) {
+        this.orderId = orderId;
+        this.quantities = quantities;
+        this.itemCount = quantities.size();
+        this.total = total;
+        this.appliedBonusCode = appliedBonusCode;
+        this.appliedBonusTitle = appliedBonusTitle;
+    }
+}
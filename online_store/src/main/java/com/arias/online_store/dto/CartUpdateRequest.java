@@ -0,0 +1,17 @@
+package com.arias.online_store.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class CartUpdateRequest {
+    @NotEmpty(message = "Список операций пуст")
+    @Size(max = 100, message = "Слишком много операций в одном запросе")
+    private List<@Valid CartOperation> operations;
+}
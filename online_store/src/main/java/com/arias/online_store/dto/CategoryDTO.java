@@ -14,4 +14,9 @@ public class CategoryDTO {
         this.id = category.getId();
         this.name = category.getName();
     }
+
+    public CategoryDTO(Integer id, String name) {
+        this.id = id;
+        this.name = name;
+    }
 }
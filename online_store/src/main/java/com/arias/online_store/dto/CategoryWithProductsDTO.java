@@ -0,0 +1,20 @@
+package com.arias.online_store.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class CategoryWithProductsDTO {
+    private Integer id;
+    private String name;
+    private List<ProductDTO> products;
+
+    public CategoryWithProductsDTO(CategoryDTO category, List<ProductDTO> products) {
+        this.id = category.getId();
+        this.name = category.getName();
+        this.products = products;
+    }
+}
@@ -0,0 +1,32 @@
+package com.arias.online_store.dto;
+
+import com.arias.online_store.entity.OrderStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Заказ в истории покупателя; itemsTotal - сумма позиций без скидок
+@Getter
+@Setter
+public class OrderHistoryDTO {
+    private Integer id;
+    private OrderStatus status;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private BigDecimal finalPrice;
+    private BigDecimal itemsTotal = BigDecimal.ZERO;
+    private List<OrderHistoryItemDTO> items = new ArrayList<>();
+
+    public OrderHistoryDTO(Integer id, OrderStatus status, LocalDateTime createdAt, LocalDateTime updatedAt,
+                           BigDecimal finalPrice) {
+        this.id = id;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.finalPrice = finalPrice;
+    }
+}
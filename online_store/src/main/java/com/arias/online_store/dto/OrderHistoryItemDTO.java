@@ -0,0 +1,31 @@
+package com.arias.online_store.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+// price - стоимость позиции целиком; review - отзыв покупателя на товар, если он есть
+@Getter
+@Setter
+public class OrderHistoryItemDTO {
+    @JsonIgnore
+    private Integer orderId;
+    private Integer productId;
+    private String productName;
+    private String image;
+    private BigDecimal price;
+    private int quantity;
+    private ReviewSummaryDTO review;
+
+    public OrderHistoryItemDTO(Integer orderId, Integer productId, String productName, String image,
+                               String imageThumbnail, BigDecimal price, Integer quantity) {
+        this.orderId = orderId;
+        this.productId = productId;
+        this.productName = productName;
+        this.image = imageThumbnail != null ? imageThumbnail : image;
+        this.price = price;
+        this.quantity = quantity != null ? quantity : 0;
+    }
+}
@@ -0,0 +1,24 @@
+package com.arias.online_store.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+public class OrderStatsDTO {
+    private long processing;
+    private long sent;
+    private long delivered;
+    private long cancelled;
+    private BigDecimal totalSales;
+
+    public OrderStatsDTO(Long processing, Long sent, Long delivered, Long cancelled, BigDecimal totalSales) {
+        this.processing = processing != null ? processing : 0;
+        this.sent = sent != null ? sent : 0;
+        this.delivered = delivered != null ? delivered : 0;
+        this.cancelled = cancelled != null ? cancelled : 0;
+        this.totalSales = totalSales != null ? totalSales : BigDecimal.ZERO;
+    }
+}
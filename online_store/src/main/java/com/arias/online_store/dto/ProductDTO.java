@@ -15,7 +15,10 @@ public class ProductDTO {
     private BigDecimal price;
     private Integer stockQuantity;
     private String image;
+    private ProductImagesDTO images;
     private CategoryDTO category;
+    private ProductRatingDTO rating;
+    private long version;
 
     public ProductDTO(Product product) {
         this.id = product.getId();
@@ -24,6 +27,55 @@ public class ProductDTO {
         this.price = product.getPrice();
         this.stockQuantity = product.getStockQuantity();
         this.image = product.getImage();
+        this.images = new ProductImagesDTO(product.getImage(), product.getImageThumbnail(),
+                product.getImageCard(), product.getImageDetail());
         this.category = product.getCategory() != null ? new CategoryDTO(product.getCategory()) : null;
+        this.version = product.getVersion();
+        this.rating = new ProductRatingDTO(product.getRatingCount(), product.getRatingSum(),
+                product.getStar1Count(), product.getStar2Count(), product.getStar3Count(),
+                product.getStar4Count(), product.getStar5Count());
+    }
+
+    public ProductDTO(Integer id, String name, String description, BigDecimal price, Integer stockQuantity,
+                      String image, String imageThumbnail, String imageCard, String imageDetail,
+                      Integer categoryId, String categoryName,
+                      int ratingCount, int ratingSum, int star1Count, int star2Count, int star3Count,
+                      int star4Count, int star5Count, long version) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.stockQuantity = stockQuantity;
+        this.image = image;
+        this.images = new ProductImagesDTO(image, imageThumbnail, imageCard, imageDetail);
+        this.category = categoryId != null ? new CategoryDTO(categoryId, categoryName) : null;
+        this.rating = new ProductRatingDTO(ratingCount, ratingSum, star1Count, star2Count, star3Count,
+                star4Count, star5Count);
+        this.version = version;
+    }
+
+    private ProductDTO(ProductDTO source) {
+        this.id = source.id;
+        this.name = source.name;
+        this.description = source.description;
+        this.price = source.price;
+        this.stockQuantity = source.stockQuantity;
+        this.image = source.image;
+        this.images = source.images;
+        this.category = source.category;
+        this.rating = source.rating;
+        this.version = source.version;
+    }
+
+    public ProductDTO withStockQuantity(Integer stockQuantity) {
+        ProductDTO copy = new ProductDTO(this);
+        copy.stockQuantity = stockQuantity;
+        return copy;
+    }
+
+    public ProductDTO withRating(ProductRatingDTO rating) {
+        ProductDTO copy = new ProductDTO(this);
+        copy.rating = rating;
+        return copy;
     }
 }
@@ -0,0 +1,19 @@
+package com.arias.online_store.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+// Пока варианты не готовы, вместо каждого отдается исходное изображение
+@Getter
+@Setter
+public class ProductImagesDTO {
+    private String thumbnail;
+    private String card;
+    private String detail;
+
+    public ProductImagesDTO(String original, String thumbnail, String card, String detail) {
+        this.thumbnail = thumbnail != null ? thumbnail : original;
+        this.card = card != null ? card : original;
+        this.detail = detail != null ? detail : original;
+    }
+}
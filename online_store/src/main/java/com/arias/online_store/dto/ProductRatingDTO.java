@@ -0,0 +1,27 @@
+package com.arias.online_store.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+@Getter
+@Setter
+public class ProductRatingDTO {
+    private int count;
+    private int sum;
+    private BigDecimal average;
+    private List<Integer> histogram;
+
+    public ProductRatingDTO(int count, int sum, int star1Count, int star2Count, int star3Count,
+                            int star4Count, int star5Count) {
+        this.count = count;
+        this.sum = sum;
+        this.average = count > 0
+                ? BigDecimal.valueOf(sum).divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP)
+                : null;
+        this.histogram = List.of(star1Count, star2Count, star3Count, star4Count, star5Count);
+    }
+}
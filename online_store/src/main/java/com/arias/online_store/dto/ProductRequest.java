@@ -12,6 +12,9 @@ public class ProductRequest {
     private String description;
     private BigDecimal price;
     private Integer stockQuantity;
+    // При правке остаток меняется на разницу, а не перезаписывается числом из формы
+    private Integer stockDelta;
     private String image;
     private Integer categoryId;
+    private Long version;
 }
@@ -0,0 +1,8 @@
+package com.arias.online_store.dto;
+
+public enum ProductSort {
+    ID,
+    PRICE_ASC,
+    PRICE_DESC,
+    RATING
+}
@@ -0,0 +1,13 @@
+package com.arias.online_store.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class RefreshTokenRequest {
+
+    @NotBlank(message = "Токен обновления не может быть пустым")
+    private String refreshToken;
+}
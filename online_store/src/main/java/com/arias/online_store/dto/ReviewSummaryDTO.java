@@ -0,0 +1,20 @@
+package com.arias.online_store.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class ReviewSummaryDTO {
+    @JsonIgnore
+    private Integer productId;
+    private int rating;
+    private String comment;
+
+    public ReviewSummaryDTO(Integer productId, Integer rating, String comment) {
+        this.productId = productId;
+        this.rating = rating != null ? rating : 0;
+        this.comment = comment;
+    }
+}
@@ -0,0 +1,9 @@
+package com.arias.online_store.dto;
+
+public enum SalesGroupBy {
+    DAY,
+    WEEK,
+    MONTH,
+    CATEGORY,
+    PRODUCT
+}
@@ -0,0 +1,19 @@
+package com.arias.online_store.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+// key - дата начала периода (ГГГГ-ММ-ДД) или id категории/товара; name заполнен только для них
+@Getter
+@Setter
+@AllArgsConstructor
+public class SalesPointDTO {
+    private String key;
+    private String name;
+    private long units;
+    private BigDecimal revenue;
+    private long orders;
+}
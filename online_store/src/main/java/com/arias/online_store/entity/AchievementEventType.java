@@ -0,0 +1,6 @@
+package com.arias.online_store.entity;
+
+public enum AchievementEventType {
+    ORDER_DELIVERED,
+    REVIEW_CHANGED
+}
@@ -9,7 +9,11 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_updated_at_id", columnList = "updated_at, id"),
+        @Index(name = "idx_orders_status_updated_at_id", columnList = "status, updated_at, id"),
+        @Index(name = "idx_orders_user_id_updated_at_id", columnList = "user_id, updated_at, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,37 @@
+package com.arias.online_store.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+// Одна из нескольких строк-слотов агрегата по заказам; итог - сумма по всем слотам.
+// Слоты нужны, чтобы параллельные переходы статусов не выстраивались в очередь за одной блокировкой строки
+@Entity
+@Table(name = "order_stats")
+@Getter
+@Setter
+@NoArgsConstructor
+public class OrderStats {
+
+    @Id
+    private Integer slot;
+
+    @Column(name = "processing_count", nullable = false)
+    private long processingCount;
+
+    @Column(name = "sent_count", nullable = false)
+    private long sentCount;
+
+    @Column(name = "delivered_count", nullable = false)
+    private long deliveredCount;
+
+    @Column(name = "cancelled_count", nullable = false)
+    private long cancelledCount;
+
+    // Сумма позиций доставленных заказов без учета скидок
+    @Column(name = "delivered_revenue", nullable = false, precision = 19, scale = 2)
+    private BigDecimal deliveredRevenue = BigDecimal.ZERO;
+}
@@ -10,7 +10,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_category_id", columnList = "category_id, id"),
+        @Index(name = "idx_products_price_id", columnList = "price, id"),
+        @Index(name = "idx_products_average_rating_id", columnList = "average_rating, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -30,12 +34,66 @@ public class Product {
     @Column(nullable = false)
     private BigDecimal price;
 
-    @Column(nullable = false)
+    // Задается при создании, дальше меняется только условными запросами StockService
+    @Column(nullable = false, updatable = false)
     private Integer stockQuantity;
 
+    // Сумма резервов из корзин; меняется только условными запросами StockReservationService
+    @Column(name = "reserved_quantity", insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int reservedQuantity;
+
     @Column(nullable = false)
     private String image;
 
+    // Уменьшенные копии image, их записывает ImageVariantService после загрузки; до готовности null
+    @Column(name = "image_thumbnail")
+    private String imageThumbnail;
+
+    @Column(name = "image_card")
+    private String imageCard;
+
+    @Column(name = "image_detail")
+    private String imageDetail;
+
+    // Версия растет только при правке карточки товара; остатки меняет StockService без блокировок
+    @Version
+    @Column(columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private long version;
+
+    // Агрегаты отзывов меняются только запросами из ReviewService, поэтому сущность их не записывает
+    @Column(name = "rating_count", insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int ratingCount;
+
+    @Column(name = "rating_sum", insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int ratingSum;
+
+    @Column(name = "average_rating", insertable = false, updatable = false,
+            columnDefinition = "DECIMAL(3,2) NOT NULL DEFAULT 0")
+    private BigDecimal averageRating = BigDecimal.ZERO;
+
+    @Column(name = "star1_count", insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int star1Count;
+
+    @Column(name = "star2_count", insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int star2Count;
+
+    @Column(name = "star3_count", insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int star3Count;
+
+    @Column(name = "star4_count", insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int star4Count;
+
+    @Column(name = "star5_count", insertable = false, updatable = false,
+            columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int star5Count;
+
     @ManyToOne
     @JoinColumn(name = "category_id", nullable = false)
     @JsonIgnoreProperties("products")
@@ -44,9 +102,4 @@ public class Product {
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
     private List<Review> reviews = new ArrayList<>();
-
-    @Setter
-    @Getter
-    @Transient
-    private Review review;
 }
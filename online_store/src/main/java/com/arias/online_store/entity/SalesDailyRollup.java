@@ -0,0 +1,41 @@
+package com.arias.online_store.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Продажи доставленных заказов за день. Строка хранит один из трех уровней:
+// товар (category_id, product_id), итог по категории (product_id = 0) и итог дня (оба 0),
+// поэтому число заказов на каждом уровне точное, а не сумма по товарам
+@Entity
+@Table(name = "sales_daily_rollups")
+@IdClass(SalesDailyRollupId.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesDailyRollup {
+
+    @Id
+    @Column(name = "sale_date")
+    private LocalDate saleDate;
+
+    @Id
+    @Column(name = "category_id")
+    private Integer categoryId;
+
+    @Id
+    @Column(name = "product_id")
+    private Integer productId;
+
+    @Column(nullable = false)
+    private long units;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal revenue;
+
+    @Column(name = "order_count", nullable = false)
+    private long orderCount;
+}
@@ -0,0 +1,17 @@
+package com.arias.online_store.entity;
+
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@EqualsAndHashCode
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesDailyRollupId implements Serializable {
+    private LocalDate saleDate;
+    private Integer categoryId;
+    private Integer productId;
+}
@@ -0,0 +1,15 @@
+package com.arias.online_store.entity;
+
+import lombok.*;
+
+import java.io.Serializable;
+
+@EqualsAndHashCode
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationId implements Serializable {
+    private Integer orderId;
+    private Integer productId;
+}
@@ -0,0 +1,39 @@
+package com.arias.online_store.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Файл в хранилище загрузок, адресованный по SHA-256 содержимого.
+// refCount - число товаров, ссылающихся на файл; блоб без ссылок удаляет сборщик мусора
+@Entity
+@Table(name = "upload_blobs", indexes = {
+        @Index(name = "idx_upload_blobs_sha256", columnList = "sha256"),
+        @Index(name = "idx_upload_blobs_ref_count", columnList = "ref_count, created_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class UploadBlob {
+
+    // Относительный путь вида ab/cd/<sha256>.png
+    @Id
+    @Column(length = 128)
+    private String path;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    // Обновляется при повторной загрузке того же содержимого, чтобы сборщик не удалил его из-под формы
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,38 @@
+package com.arias.online_store.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "user_loyalty_stats")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserLoyaltyStats {
+
+    @Id
+    @Column(name = "user_id")
+    private Integer userId;
+
+    @Column(name = "delivered_count", nullable = false)
+    private int deliveredCount;
+
+    @Column(name = "distinct_product_count", nullable = false)
+    private int distinctProductCount;
+
+    // Бит i означает заказ в месяце lastActiveMonth - i, месяцы считаются как год * 12 + номер месяца - 1
+    @Column(name = "active_months", nullable = false)
+    private long activeMonths;
+
+    @Column(name = "last_active_month", nullable = false)
+    private int lastActiveMonth;
+
+    @Column(name = "last_delivered_at")
+    private LocalDateTime lastDeliveredAt;
+}
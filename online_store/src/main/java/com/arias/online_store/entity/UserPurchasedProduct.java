@@ -0,0 +1,22 @@
+package com.arias.online_store.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+@Entity
+@Table(name = "user_purchased_products")
+@IdClass(UserPurchasedProductId.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPurchasedProduct {
+
+    @Id
+    @Column(name = "user_id")
+    private Integer userId;
+
+    @Id
+    @Column(name = "product_id")
+    private Integer productId;
+}
@@ -0,0 +1,15 @@
+package com.arias.online_store.entity;
+
+import lombok.*;
+
+import java.io.Serializable;
+
+@EqualsAndHashCode
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPurchasedProductId implements Serializable {
+    private Integer userId;
+    private Integer productId;
+}
@@ -1,6 +1,8 @@
 package com.arias.online_store.exception;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -20,6 +22,11 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(ex.getStatusCode()).body(ex.getReason() != null ? ex.getReason() : "Ошибка");
     }
 
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleOptimisticLockingFailure(ObjectOptimisticLockingFailureException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("Данные были изменены другим пользователем, обновите страницу");
+    }
+
     @ExceptionHandler({ IllegalArgumentException.class, IllegalStateException.class})
     public ResponseEntity<String> handleIllegalArgumentException(RuntimeException ex) {
         return ResponseEntity.badRequest().body(ex.getMessage());
@@ -0,0 +1,39 @@
+package com.arias.online_store.repository;
+
+import com.arias.online_store.entity.AchievementEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AchievementEventRepository extends JpaRepository<AchievementEvent, Long> {
+
+    // Захваченные строки остаются заблокированными до коммита, и другой узел их пропускает,
+    // поэтому одно событие не попадает в две пачки одновременно
+    @Query(value = "select * from achievement_events where parked = false and next_attempt_at <= :now " +
+            "order by id limit :limit for update skip locked", nativeQuery = true)
+    List<AchievementEvent> lockDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("update AchievementEvent e set e.nextAttemptAt = :nextAttemptAt where e.id in :ids")
+    int postpone(@Param("ids") Collection<Long> ids, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    @Modifying
+    @Query("update AchievementEvent e set e.attempts = e.attempts + 1, e.nextAttemptAt = :nextAttemptAt " +
+            "where e.id in :ids")
+    int markFailed(@Param("ids") Collection<Long> ids, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    @Modifying
+    @Query("update AchievementEvent e set e.attempts = e.attempts + 1, e.parked = true where e.id in :ids")
+    int park(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from AchievementEvent e where e.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
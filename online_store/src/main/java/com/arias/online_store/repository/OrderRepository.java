@@ -1,11 +1,19 @@
 package com.arias.online_store.repository;
 
+import com.arias.online_store.dto.AdminOrderSummaryDTO;
+import com.arias.online_store.dto.OrderHistoryDTO;
+import com.arias.online_store.dto.OrderHistoryItemDTO;
 import com.arias.online_store.entity.Order;
 import com.arias.online_store.entity.OrderStatus;
 import com.arias.online_store.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -29,4 +37,51 @@ public interface OrderRepository extends JpaRepository<Order, Integer> {
     Integer countByUserIdAndStatus(Integer userId, OrderStatus status);
 
     List<Order> findByUserIdAndStatus(Integer userId, OrderStatus status);
+
+    // Сумма и число позиций считаются подзапросами только для строк страницы; для заказов без
+    // final_price сумма берется по позициям
+    @Query("select new com.arias.online_store.dto.AdminOrderSummaryDTO(o.id, u.id, u.name, u.email, o.status, " +
+            "o.createdAt, o.updatedAt, " +
+            "coalesce(o.finalPrice, (select sum(i.price) from OrderItem i where i.order = o)), " +
+            "(select sum(i.quantity) from OrderItem i where i.order = o)) " +
+            "from Order o join o.user u " +
+            "where (:status is null or o.status = :status) " +
+            "and (:userId is null or u.id = :userId) " +
+            "and (:email is null or u.email like concat(:email, '%') escape '!') " +
+            "and (:from is null or o.createdAt >= :from) " +
+            "and (:to is null or o.createdAt < :to) " +
+            "and (:minTotal is null or coalesce(o.finalPrice, " +
+            "(select sum(i.price) from OrderItem i where i.order = o)) >= :minTotal) " +
+            "and (:afterId is null or o.updatedAt < :afterUpdatedAt " +
+            "or (o.updatedAt = :afterUpdatedAt and o.id < :afterId)) " +
+            "order by o.updatedAt desc, o.id desc")
+    List<AdminOrderSummaryDTO> findAdminPage(@Param("status") OrderStatus status,
+                                             @Param("userId") Integer userId,
+                                             @Param("email") String email,
+                                             @Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to,
+                                             @Param("minTotal") BigDecimal minTotal,
+                                             @Param("afterUpdatedAt") LocalDateTime afterUpdatedAt,
+                                             @Param("afterId") Integer afterId,
+                                             Limit limit);
+
+    @Query("select new com.arias.online_store.dto.OrderHistoryDTO(o.id, o.status, o.createdAt, o.updatedAt, " +
+            "o.finalPrice) from Order o " +
+            "where o.user.id = :userId and (:afterId is null or o.id < :afterId) " +
+            "order by o.id desc")
+    List<OrderHistoryDTO> findHistoryPage(@Param("userId") Integer userId,
+                                          @Param("afterId") Integer afterId,
+                                          Limit limit);
+
+    @Query("select new com.arias.online_store.dto.OrderHistoryItemDTO(i.order.id, p.id, p.name, p.image, " +
+            "p.imageThumbnail, i.price, i.quantity) " +
+            "from OrderItem i join i.product p " +
+            "where i.order.id in :orderIds " +
+            "order by i.order.id, p.id")
+    List<OrderHistoryItemDTO> findHistoryItems(@Param("orderIds") Collection<Integer> orderIds);
+
+    @Query("select distinct o from Order o join fetch o.user " +
+            "left join fetch o.orderItems i left join fetch i.product p left join fetch p.category " +
+            "where o.id = :id")
+    Optional<Order> findDetailedById(@Param("id") Integer id);
 }
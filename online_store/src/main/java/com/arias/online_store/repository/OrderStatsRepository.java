@@ -0,0 +1,39 @@
+package com.arias.online_store.repository;
+
+import com.arias.online_store.dto.OrderStatsDTO;
+import com.arias.online_store.entity.OrderStats;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface OrderStatsRepository extends JpaRepository<OrderStats, Integer> {
+
+    @Query("select new com.arias.online_store.dto.OrderStatsDTO(" +
+            "sum(s.processingCount), sum(s.sentCount), sum(s.deliveredCount), sum(s.cancelledCount), " +
+            "sum(s.deliveredRevenue)) from OrderStats s")
+    OrderStatsDTO sumAll();
+
+    @Modifying
+    @Query("update OrderStats s set " +
+            "s.processingCount = s.processingCount + :processing, " +
+            "s.sentCount = s.sentCount + :sent, " +
+            "s.deliveredCount = s.deliveredCount + :delivered, " +
+            "s.cancelledCount = s.cancelledCount + :cancelled, " +
+            "s.deliveredRevenue = s.deliveredRevenue + :revenue " +
+            "where s.slot = :slot")
+    int apply(@Param("slot") int slot, @Param("processing") long processing, @Param("sent") long sent,
+              @Param("delivered") long delivered, @Param("cancelled") long cancelled,
+              @Param("revenue") BigDecimal revenue);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from OrderStats s order by s.slot")
+    List<OrderStats> findAllForUpdate();
+}
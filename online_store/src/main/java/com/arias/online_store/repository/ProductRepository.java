@@ -1,12 +1,126 @@
 package com.arias.online_store.repository;
 
+import com.arias.online_store.dto.ProductDTO;
+import com.arias.online_store.dto.ProductRatingDTO;
 import com.arias.online_store.entity.Product;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProductRepository extends JpaRepository <Product, Integer> {
+    String PRODUCT_DTO_SELECT = "select new com.arias.online_store.dto.ProductDTO(" +
+            "p.id, p.name, p.description, p.price, p.stockQuantity, " +
+            "p.image, p.imageThumbnail, p.imageCard, p.imageDetail, c.id, c.name, " +
+            "p.ratingCount, p.ratingSum, p.star1Count, p.star2Count, p.star3Count, p.star4Count, p.star5Count, p.version) " +
+            "from Product p join p.category c ";
+
+    String PRODUCT_FILTER = "where (:categoryId is null or c.id = :categoryId) " +
+            "and (:minPrice is null or p.price >= :minPrice) " +
+            "and (:maxPrice is null or p.price <= :maxPrice) " +
+            "and (:inStock = false or p.stockQuantity > 0) ";
+
     List<Product> findByCategoryId(Integer categoryId);
+
+    @Query(PRODUCT_DTO_SELECT + "order by p.id")
+    List<ProductDTO> findAllAsDto();
+
+    @Query(PRODUCT_DTO_SELECT + PRODUCT_FILTER +
+            "and (:afterId is null or p.id > :afterId) " +
+            "order by p.id")
+    List<ProductDTO> findPageOrderById(@Param("categoryId") Integer categoryId,
+                                       @Param("minPrice") BigDecimal minPrice,
+                                       @Param("maxPrice") BigDecimal maxPrice,
+                                       @Param("inStock") boolean inStock,
+                                       @Param("afterId") Integer afterId,
+                                       Limit limit);
+
+    @Query(PRODUCT_DTO_SELECT + PRODUCT_FILTER +
+            "and (:afterId is null or p.price > :afterPrice or (p.price = :afterPrice and p.id > :afterId)) " +
+            "order by p.price, p.id")
+    List<ProductDTO> findPageOrderByPriceAsc(@Param("categoryId") Integer categoryId,
+                                             @Param("minPrice") BigDecimal minPrice,
+                                             @Param("maxPrice") BigDecimal maxPrice,
+                                             @Param("inStock") boolean inStock,
+                                             @Param("afterPrice") BigDecimal afterPrice,
+                                             @Param("afterId") Integer afterId,
+                                             Limit limit);
+
+    @Query(PRODUCT_DTO_SELECT + PRODUCT_FILTER +
+            "and (:afterId is null or p.price < :afterPrice or (p.price = :afterPrice and p.id > :afterId)) " +
+            "order by p.price desc, p.id")
+    List<ProductDTO> findPageOrderByPriceDesc(@Param("categoryId") Integer categoryId,
+                                              @Param("minPrice") BigDecimal minPrice,
+                                              @Param("maxPrice") BigDecimal maxPrice,
+                                              @Param("inStock") boolean inStock,
+                                              @Param("afterPrice") BigDecimal afterPrice,
+                                              @Param("afterId") Integer afterId,
+                                              Limit limit);
+
+    @Query(PRODUCT_DTO_SELECT + PRODUCT_FILTER +
+            "and (:afterId is null or p.averageRating < :afterRating " +
+            "or (p.averageRating = :afterRating and p.id > :afterId)) " +
+            "order by p.averageRating desc, p.id")
+    List<ProductDTO> findPageOrderByRating(@Param("categoryId") Integer categoryId,
+                                           @Param("minPrice") BigDecimal minPrice,
+                                           @Param("maxPrice") BigDecimal maxPrice,
+                                           @Param("inStock") boolean inStock,
+                                           @Param("afterRating") BigDecimal afterRating,
+                                           @Param("afterId") Integer afterId,
+                                           Limit limit);
+
+    @Query("select new com.arias.online_store.dto.ProductRatingDTO(p.ratingCount, p.ratingSum, " +
+            "p.star1Count, p.star2Count, p.star3Count, p.star4Count, p.star5Count) " +
+            "from Product p where p.id = :productId")
+    Optional<ProductRatingDTO> findRatingById(@Param("productId") Integer productId);
+
+    // MySQL вычисляет SET слева направо по уже обновленным значениям,
+    // поэтому среднее пересчитывается первым, пока счетчики еще старые
+    @Modifying
+    @Query("update Product p set " +
+            "p.averageRating = case when p.ratingCount + :delta > 0 " +
+            "then (p.ratingSum + :sumDelta) * 1.0 / (p.ratingCount + :delta) else 0 end, " +
+            "p.ratingCount = p.ratingCount + :delta, " +
+            "p.ratingSum = p.ratingSum + :sumDelta, " +
+            "p.star1Count = p.star1Count + case when :rating = 1 then :delta else 0 end, " +
+            "p.star2Count = p.star2Count + case when :rating = 2 then :delta else 0 end, " +
+            "p.star3Count = p.star3Count + case when :rating = 3 then :delta else 0 end, " +
+            "p.star4Count = p.star4Count + case when :rating = 4 then :delta else 0 end, " +
+            "p.star5Count = p.star5Count + case when :rating = 5 then :delta else 0 end " +
+            "where p.id = :productId")
+    int applyRating(@Param("productId") Integer productId, @Param("rating") int rating,
+                    @Param("delta") int delta, @Param("sumDelta") int sumDelta);
+
+    @Modifying
+    @Query(value = "update products p left join (" +
+            "select product_id, count(*) cnt, sum(rating) total, " +
+            "sum(rating = 1) s1, sum(rating = 2) s2, sum(rating = 3) s3, sum(rating = 4) s4, sum(rating = 5) s5 " +
+            "from reviews group by product_id) r on r.product_id = p.id " +
+            "set p.average_rating = coalesce(r.total / r.cnt, 0), " +
+            "p.rating_count = coalesce(r.cnt, 0), p.rating_sum = coalesce(r.total, 0), " +
+            "p.star1_count = coalesce(r.s1, 0), p.star2_count = coalesce(r.s2, 0), p.star3_count = coalesce(r.s3, 0), " +
+            "p.star4_count = coalesce(r.s4, 0), p.star5_count = coalesce(r.s5, 0)",
+            nativeQuery = true)
+    int rebuildRatings();
+
+    @Query("select coalesce(sum(p.ratingCount), 0) from Product p")
+    long sumRatingCounts();
+
+    List<Product> findByImage(String image);
+
+    @Query("select distinct p.image from Product p where p.imageCard is null")
+    List<String> findImagesWithoutVariants();
+
+    @Modifying
+    @Query("update Product p set p.imageThumbnail = :thumbnail, p.imageCard = :card, p.imageDetail = :detail " +
+            "where p.image = :image")
+    int setImageVariants(@Param("image") String image, @Param("thumbnail") String thumbnail,
+                         @Param("card") String card, @Param("detail") String detail);
 }
@@ -1,16 +1,26 @@
 package com.arias.online_store.repository;
 
+import com.arias.online_store.dto.ReviewSummaryDTO;
 import com.arias.online_store.entity.Review;
 import com.arias.online_store.entity.ReviewId;
 import com.arias.online_store.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, ReviewId> {
     List<Review> findByProductId(Integer product_id);
     List<Review> findByUser(User user);
+    List<Review> findByUserId(Integer userId);
     Integer countByUserId(Integer userId);
+
+    @Query("select new com.arias.online_store.dto.ReviewSummaryDTO(r.product.id, r.rating, r.comment) " +
+            "from Review r where r.user.id = :userId and r.product.id in :productIds")
+    List<ReviewSummaryDTO> findSummariesByUserAndProducts(@Param("userId") Integer userId,
+                                                          @Param("productIds") Collection<Integer> productIds);
 }
@@ -0,0 +1,23 @@
+package com.arias.online_store.repository;
+
+import com.arias.online_store.entity.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    List<RevokedToken> findByExpiresAtAfter(LocalDateTime time);
+
+    List<RevokedToken> findByRevokedAtGreaterThanEqual(LocalDateTime time);
+
+    @Modifying
+    @Query("delete from RevokedToken t where t.expiresAt <= :time")
+    int deleteExpired(@Param("time") LocalDateTime time);
+}
@@ -0,0 +1,29 @@
+package com.arias.online_store.repository;
+
+import com.arias.online_store.entity.StockReservation;
+import com.arias.online_store.entity.StockReservationId;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, StockReservationId> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from StockReservation r where r.orderId = :orderId and r.productId = :productId")
+    Optional<StockReservation> findForUpdate(@Param("orderId") Integer orderId, @Param("productId") Integer productId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from StockReservation r where r.orderId = :orderId")
+    List<StockReservation> findByOrderIdForUpdate(@Param("orderId") Integer orderId);
+
+    List<StockReservation> findByExpiresAtBeforeOrderByExpiresAt(LocalDateTime time, Limit limit);
+}
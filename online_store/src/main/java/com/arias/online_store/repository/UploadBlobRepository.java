@@ -0,0 +1,43 @@
+package com.arias.online_store.repository;
+
+import com.arias.online_store.entity.UploadBlob;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadBlobRepository extends JpaRepository<UploadBlob, String> {
+
+    @Modifying
+    @Query(value = "insert into upload_blobs (path, sha256, size, ref_count, created_at) " +
+            "values (:path, :sha256, :size, 0, :now) " +
+            "on duplicate key update created_at = :now", nativeQuery = true)
+    int upsert(@Param("path") String path, @Param("sha256") String sha256,
+               @Param("size") long size, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("update UploadBlob b set b.refCount = b.refCount + :delta " +
+            "where b.path = :path and b.refCount + :delta >= 0")
+    int adjustRefCount(@Param("path") String path, @Param("delta") int delta);
+
+    // Пересчет по фактическим ссылкам исправляет счетчики, разошедшиеся из-за сбоев
+    @Modifying
+    @Query(value = "update upload_blobs b set b.ref_count = " +
+            "(select count(*) from products p where p.image = concat(:baseUrl, b.path))", nativeQuery = true)
+    int rebuildRefCounts(@Param("baseUrl") String baseUrl);
+
+    @Query("select b.path from UploadBlob b where b.refCount = 0 and b.createdAt < :cutoff order by b.createdAt")
+    List<String> findOrphans(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    @Modifying
+    @Query("delete from UploadBlob b where b.path = :path and b.refCount = 0 and b.createdAt < :cutoff")
+    int deleteOrphan(@Param("path") String path, @Param("cutoff") LocalDateTime cutoff);
+
+    boolean existsBySha256(String sha256);
+}
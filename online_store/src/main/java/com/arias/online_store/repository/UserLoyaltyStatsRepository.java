@@ -0,0 +1,29 @@
+package com.arias.online_store.repository;
+
+import com.arias.online_store.entity.UserLoyaltyStats;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface UserLoyaltyStatsRepository extends JpaRepository<UserLoyaltyStats, Integer> {
+
+    @Modifying
+    @Query(value = "insert ignore into user_loyalty_stats " +
+            "(user_id, delivered_count, distinct_product_count, active_months, last_active_month) " +
+            "values (:userId, 0, 0, 0, 0)", nativeQuery = true)
+    int createIfAbsent(@Param("userId") Integer userId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from UserLoyaltyStats s where s.userId = :userId")
+    Optional<UserLoyaltyStats> findForUpdate(@Param("userId") Integer userId);
+
+    @Query("select coalesce(sum(s.deliveredCount), 0) from UserLoyaltyStats s")
+    long sumDeliveredCounts();
+}
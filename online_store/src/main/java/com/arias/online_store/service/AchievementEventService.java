@@ -0,0 +1,144 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.entity.AchievementEvent;
+import com.arias.online_store.entity.AchievementEventType;
+import com.arias.online_store.repository.AchievementEventRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+// Проверка достижений вынесена из запросов: событие пишется в achievement_events в той же
+// транзакции, что и изменение заказа или отзыва, и становится видно обработчику только после коммита.
+// Обработчик забирает накопившиеся за окно события, группирует их по пользователю и проверяет
+// каждого один раз. Если узел упал, неудаленные события будут взяты повторно после истечения аренды.
+// После max-attempts неудачных попыток событие откладывается в сторону (parked) и больше не повторяется
+@Slf4j
+@Service
+public class AchievementEventService {
+
+    private static final Duration LEASE = Duration.ofMinutes(5);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+
+    private final AchievementEventRepository achievementEventRepository;
+    private final AchievementService achievementService;
+    private final CartSummaryService cartSummaryService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final ExecutorService executor;
+    // Пачки в работе: планировщик не ждет их завершения, а просто не берет новую
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Autowired
+    public AchievementEventService(AchievementEventRepository achievementEventRepository,
+                                   AchievementService achievementService, CartSummaryService cartSummaryService,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${store.achievements.batch-size:500}") int batchSize,
+                                   @Value("${store.achievements.workers:4}") int workers,
+                                   @Value("${store.achievements.max-attempts:10}") int maxAttempts) {
+        this.achievementEventRepository = achievementEventRepository;
+        this.achievementService = achievementService;
+        this.cartSummaryService = cartSummaryService;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        // В очереди не больше одной пачки (batchSize событий), поэтому отдельная граница ей не нужна
+        this.executor = Executors.newFixedThreadPool(workers);
+    }
+
+    public void publish(Integer userId, AchievementEventType type) {
+        LocalDateTime now = LocalDateTime.now();
+        achievementEventRepository.save(new AchievementEvent(null, userId, type, 0, now, now, false));
+    }
+
+    @Scheduled(fixedDelayString = "${store.achievements.batch-window:PT1S}")
+    public void processPending() {
+        if (inFlight.get() > 0) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<AchievementEvent> events = transactionTemplate.execute(status -> {
+            List<AchievementEvent> due = achievementEventRepository.lockDue(now, batchSize);
+            if (!due.isEmpty()) {
+                achievementEventRepository.postpone(ids(due), now.plus(LEASE));
+            }
+            return due;
+        });
+        if (events == null || events.isEmpty()) {
+            return;
+        }
+
+        // Проверки идемпотентны, поэтому редкая повторная обработка одного события безопасна
+        Collection<List<AchievementEvent>> byUser = events.stream()
+                .collect(Collectors.groupingBy(AchievementEvent::getUserId))
+                .values();
+        inFlight.addAndGet(byUser.size());
+        for (List<AchievementEvent> userEvents : byUser) {
+            executor.execute(() -> {
+                try {
+                    evaluate(userEvents);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    private void evaluate(List<AchievementEvent> userEvents) {
+        Integer userId = userEvents.get(0).getUserId();
+        Set<AchievementEventType> types = userEvents.stream()
+                .map(AchievementEvent::getType)
+                .collect(Collectors.toCollection(() -> EnumSet.noneOf(AchievementEventType.class)));
+        List<Long> ids = ids(userEvents);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (types.contains(AchievementEventType.REVIEW_CHANGED)) {
+                    achievementService.evaluateReviewAchievements(userId);
+                }
+                if (types.contains(AchievementEventType.ORDER_DELIVERED)) {
+                    achievementService.evaluateDeliveredOrderAchievements(userId);
+                }
+                achievementEventRepository.deleteByIds(ids);
+            });
+            // Новые достижения меняют скидку в корзине
+            cartSummaryService.invalidate(userId);
+        } catch (RuntimeException e) {
+            int attempts = userEvents.stream().mapToInt(AchievementEvent::getAttempts).max().orElse(0) + 1;
+            if (attempts >= maxAttempts) {
+                transactionTemplate.executeWithoutResult(status -> achievementEventRepository.park(ids));
+                log.error("Проверка достижений пользователя {} не удалась {} раз, события отложены", userId, attempts, e);
+                return;
+            }
+
+            Duration backoff = Duration.ofSeconds(5L << Math.min(attempts, 10));
+            LocalDateTime nextAttemptAt = LocalDateTime.now()
+                    .plus(backoff.compareTo(MAX_BACKOFF) < 0 ? backoff : MAX_BACKOFF);
+            transactionTemplate.executeWithoutResult(status ->
+                    achievementEventRepository.markFailed(ids, nextAttemptAt));
+            log.warn("Не удалось проверить достижения пользователя {}, попытка {}", userId, attempts, e);
+        }
+    }
+
+    private List<Long> ids(List<AchievementEvent> events) {
+        return events.stream().map(AchievementEvent::getId).toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
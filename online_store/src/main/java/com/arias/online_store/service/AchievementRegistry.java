@@ -0,0 +1,67 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.entity.Achievement;
+import com.arias.online_store.repository.AchievementRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Справочник достижений почти не меняется, поэтому держим его в памяти целиком.
+// Набор заменяется одной ссылкой при reload(), читатели всегда видят согласованную копию
+@Component
+public class AchievementRegistry {
+
+    private final AchievementRepository achievementRepository;
+
+    private volatile Definitions definitions = new Definitions(List.of());
+
+    @Autowired
+    public AchievementRegistry(AchievementRepository achievementRepository) {
+        this.achievementRepository = achievementRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    public synchronized void reload() {
+        definitions = new Definitions(achievementRepository.findAll());
+    }
+
+    public List<Achievement> getAll() {
+        return definitions.all;
+    }
+
+    public Optional<Achievement> getByCode(String conditionCode) {
+        return Optional.ofNullable(definitions.byCode.get(conditionCode));
+    }
+
+    public Optional<Achievement> getById(Integer id) {
+        return Optional.ofNullable(definitions.byId.get(id));
+    }
+
+    public Optional<String> getConditionCode(Integer id) {
+        return getById(id).map(Achievement::getConditionCode);
+    }
+
+    private static class Definitions {
+        private final List<Achievement> all;
+        private final Map<String, Achievement> byCode;
+        private final Map<Integer, Achievement> byId;
+
+        Definitions(List<Achievement> achievements) {
+            this.all = achievements.stream()
+                    .sorted(Comparator.comparing(Achievement::getId))
+                    .toList();
+            this.byCode = all.stream()
+                    .collect(Collectors.toUnmodifiableMap(Achievement::getConditionCode, Function.identity()));
+            this.byId = all.stream()
+                    .collect(Collectors.toUnmodifiableMap(Achievement::getId, Function.identity()));
+        }
+    }
+}
@@ -3,8 +3,6 @@ package com.arias.online_store.service;
 import com.arias.online_store.dto.AchievementDTO;
 import com.arias.online_store.dto.AchievementWithBonusDTO;
 import com.arias.online_store.entity.*;
-import com.arias.online_store.repository.AchievementRepository;
-import com.arias.online_store.repository.OrderRepository;
 import com.arias.online_store.repository.ReviewRepository;
 import com.arias.online_store.repository.UserAchievementRepository;
 import org.springframework.stereotype.Service;
@@ -19,21 +17,21 @@ import java.util.stream.Collectors;
 @Service
 public class AchievementService {
 
-    private final AchievementRepository achievementRepository;
+    private final AchievementRegistry achievementRegistry;
     private final UserAchievementRepository userAchievementRepository;
-    private final OrderRepository orderRepository;
     private final ReviewRepository reviewRepository;
+    private final LoyaltyStatsService loyaltyStatsService;
 
-    public AchievementService(AchievementRepository achievementRepository,
-                              UserAchievementRepository userAchievementRepository, OrderRepository orderRepository, ReviewRepository reviewRepository) {
-        this.achievementRepository = achievementRepository;
+    public AchievementService(AchievementRegistry achievementRegistry,
+                              UserAchievementRepository userAchievementRepository, ReviewRepository reviewRepository, LoyaltyStatsService loyaltyStatsService) {
+        this.achievementRegistry = achievementRegistry;
         this.userAchievementRepository = userAchievementRepository;
-        this.orderRepository = orderRepository;
         this.reviewRepository = reviewRepository;
+        this.loyaltyStatsService = loyaltyStatsService;
     }
 
     public void checkAndUnlockAchievement(Integer userId, String conditionCode, boolean shouldHave) {
-        Optional<Achievement> achievementOpt = achievementRepository.findByConditionCode(conditionCode);
+        Optional<Achievement> achievementOpt = achievementRegistry.getByCode(conditionCode);
         if (achievementOpt.isEmpty()) return;
 
         Achievement achievement = achievementOpt.get();
@@ -56,7 +54,7 @@ public class AchievementService {
     }
 
     public List<AchievementDTO> getAllAchievementsAsDTO() {
-        return achievementRepository.findAll().stream()
+        return achievementRegistry.getAll().stream()
                 .map(a -> new AchievementDTO(a.getId(), a.getTitle(), a.getDescription(),
                         a.getReward()))
                 .collect(Collectors.toList());
@@ -65,42 +63,30 @@ public class AchievementService {
     public List<AchievementWithBonusDTO> getUserAchievementsWithBonusInfo(Integer userId) {
         return userAchievementRepository.findByUserId(userId).stream()
                 .map(ua -> new AchievementWithBonusDTO(ua.getAchievementId(),
-                        ua.getAchievement().getTitle(), ua.isBonusUsed()))
+                        achievementRegistry.getById(ua.getAchievementId()).map(Achievement::getTitle).orElse(null),
+                        ua.isBonusUsed()))
                 .collect(Collectors.toList());
     }
 
     public void evaluateDeliveredOrderAchievements(Integer userId) {
-        List<Order> deliveredOrders = orderRepository.findByUserIdAndStatus(userId, OrderStatus.DELIVERED);
+        Optional<UserLoyaltyStats> statsOpt = loyaltyStatsService.getStats(userId);
 
-        if (deliveredOrders.isEmpty()) return;
+        if (statsOpt.isEmpty() || statsOpt.get().getDeliveredCount() == 0) return;
+        UserLoyaltyStats stats = statsOpt.get();
 
         // Ачивка за первый заказ
         checkAndUnlockAchievement(userId, "first_order");
 
         // Количество заказов
-        int deliveredCount = deliveredOrders.size();
+        int deliveredCount = stats.getDeliveredCount();
         if (deliveredCount >= 3) checkAndUnlockAchievement(userId, "order_count_3");
         if (deliveredCount >= 5) checkAndUnlockAchievement(userId, "order_count_5");
 
         // Уникальные товары
-        Set<Integer> uniqueProductIds = deliveredOrders.stream()
-                .flatMap(order -> order.getOrderItems().stream())
-                .map(item -> item.getProduct().getId())
-                .collect(Collectors.toSet());
-        if (uniqueProductIds.size() >= 5) checkAndUnlockAchievement(userId, "unique_products_5");
+        if (stats.getDistinctProductCount() >= 5) checkAndUnlockAchievement(userId, "unique_products_5");
 
         // Серия заказов по месяцам
-        Set<YearMonth> monthsWithOrders = deliveredOrders.stream()
-                .map(order -> YearMonth.from(order.getUpdatedAt()))
-                .collect(Collectors.toSet());
-
-        YearMonth currentMonth = YearMonth.now();
-        long streak = 0;
-        for (int i = 0; i < 3; i++) {
-            if (monthsWithOrders.contains(currentMonth.minusMonths(i))) {
-                streak++;
-            } else break;
-        }
+        int streak = loyaltyStatsService.monthStreak(stats, YearMonth.now(), 3);
 
         if (streak >= 3) checkAndUnlockAchievement(userId, "monthly_order_streak_3");
 
@@ -115,14 +101,14 @@ public class AchievementService {
     }
 
     private void checkAllAchievementsUnlocked(Integer userId) {
-        Optional<Achievement> allAchievementOpt = achievementRepository.findByConditionCode("all_achievements");
+        Optional<Achievement> allAchievementOpt = achievementRegistry.getByCode("all_achievements");
         if (allAchievementOpt.isEmpty()) return;
 
         Achievement allAchievement = allAchievementOpt.get();
         boolean alreadyUnlocked = userAchievementRepository.existsByUserIdAndAchievementId(userId, allAchievement.getId());
         if (alreadyUnlocked) return;
 
-        List<Achievement> allAchievements = achievementRepository.findAll();
+        List<Achievement> allAchievements = achievementRegistry.getAll();
         Set<Integer> otherAchievementIds = allAchievements.stream()
                 .filter(a -> !a.getConditionCode().equals("all_achievements"))
                 .map(Achievement::getId)
@@ -136,17 +122,4 @@ public class AchievementService {
             checkAndUnlockAchievement(userId, "all_achievements");
         }
     }
-
-    public List<UserAchievement> getActiveBonuses(User user) {
-        List<String> activeCodes = List.of("first_order", "order_count_3", "order_count_5");
-
-        return userAchievementRepository.findByUserId(user.getId()).stream()
-                .filter(ua -> {
-                    Optional<Achievement> achievementOpt = achievementRepository.findById(ua.getAchievementId());
-                    return achievementOpt.isPresent()
-                            && activeCodes.contains(achievementOpt.get().getConditionCode())
-                            && !ua.isBonusUsed();
-                })
-                .collect(Collectors.toList());
-    }
 }
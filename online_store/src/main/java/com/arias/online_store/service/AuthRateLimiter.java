@@ -0,0 +1,89 @@
+package com.arias.online_store.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Ограничение частоты попыток входа, регистрации и смены пароля: отдельные корзины токенов
+// на IP и на email. Проверка выполняется до bcrypt, поэтому отказ почти ничего не стоит
+@Component
+public class AuthRateLimiter {
+
+    private static final int MAX_TRACKED_KEYS = 100_000;
+
+    private final Limiter ipLimiter;
+    private final Limiter emailLimiter;
+
+    public AuthRateLimiter(@Value("${store.auth.rate-limit.ip-per-minute:30}") int ipPerMinute,
+                           @Value("${store.auth.rate-limit.email-per-minute:5}") int emailPerMinute) {
+        this.ipLimiter = new Limiter(ipPerMinute);
+        this.emailLimiter = new Limiter(emailPerMinute);
+    }
+
+    public void check(String ip, String email) {
+        boolean allowed = ipLimiter.tryAcquire(ip);
+        if (allowed && email != null) {
+            allowed = emailLimiter.tryAcquire(email.trim().toLowerCase(Locale.ROOT));
+        }
+        if (!allowed) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Слишком много попыток, повторите позже");
+        }
+    }
+
+    // Корзины хранятся в LRU-порядке с жестким пределом: при переполнении вытесняется одна
+    // давно не тронутая корзина, поэтому проверка стоит O(1) при любом числе ключей.
+    // Под общим замком выполняется только арифметика корзины, без bcrypt и ввода-вывода
+    private static class Limiter {
+        private final int capacity;
+        private final double tokensPerNano;
+        private final Map<String, Bucket> buckets = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                return size() > MAX_TRACKED_KEYS;
+            }
+        };
+
+        Limiter(int perMinute) {
+            this.capacity = perMinute;
+            this.tokensPerNano = perMinute / 60_000_000_000.0;
+        }
+
+        synchronized boolean tryAcquire(String key) {
+            if (key == null) {
+                return true;
+            }
+
+            long now = System.nanoTime();
+            return buckets.computeIfAbsent(key, k -> new Bucket(capacity, now)).tryAcquire(now);
+        }
+
+        private class Bucket {
+            private double tokens;
+            private long updatedAt;
+
+            Bucket(double tokens, long updatedAt) {
+                this.tokens = tokens;
+                this.updatedAt = updatedAt;
+            }
+
+            boolean tryAcquire(long now) {
+                refill(now);
+                if (tokens < 1) {
+                    return false;
+                }
+                tokens -= 1;
+                return true;
+            }
+
+            private void refill(long now) {
+                tokens = Math.min(capacity, tokens + (now - updatedAt) * tokensPerNano);
+                updatedAt = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.dto.CartSummaryDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Кэш сводки корзины по пользователю. Запись сбрасывается изменениями корзины в OrderService
+// и пересчетом достижений, остальное устаревает по TTL. ETag выводится из содержимого,
+// поэтому пересборка записи без изменений корзины не заставляет клиента перечитывать ответ
+@Service
+public class CartSummaryService {
+
+    private static final int GENERATION_STRIPES = 256;
+
+    // Только id товаров и количества: сущности заказа, товаров и пользователя сводке не нужны
+    private static final String CART_LINES_SQL = "SELECT o.id order_id, o.final_price, oi.product_id, " +
+            "oi.quantity, oi.price FROM orders o LEFT JOIN order_items oi ON oi.order_id = o.id " +
+            "WHERE o.user_id = ? AND o.status = 'PROCESSING' ORDER BY o.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LoyaltyPricingEngine loyaltyPricingEngine;
+    private final long ttlNanos;
+    private final int maxSize;
+
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    // Сброс увеличивает поколение; сводка, собранная при старом поколении, в кэш не попадает
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    @Autowired
+    public CartSummaryService(JdbcTemplate jdbcTemplate, LoyaltyPricingEngine loyaltyPricingEngine,
+                              @Value("${store.cart.summary-cache.ttl:PT5M}") Duration ttl,
+                              @Value("${store.cart.summary-cache.max-size:10000}") int maxSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.loyaltyPricingEngine = loyaltyPricingEngine;
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+    }
+
+    public CachedSummary getSummary(Integer userId) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(userId);
+        if (entry != null && now - entry.loadedAt < ttlNanos) {
+            return entry.summary;
+        }
+
+        int stripe = Math.floorMod(userId, GENERATION_STRIPES);
+        long generation = generations.get(stripe);
+        CachedSummary summary = load(userId);
+        if (entries.size() >= maxSize) {
+            evictExpired(now);
+        }
+        // Поколение проверяется под замком ключа: evict увеличивает его до удаления записи,
+        // поэтому сброс либо виден здесь, либо удалит уже положенную запись
+        entries.compute(userId, (key, current) -> {
+            if (generations.get(stripe) != generation || current == null && entries.size() >= maxSize) {
+                return current;
+            }
+            return new Entry(summary, now);
+        });
+        return summary;
+    }
+
+    // Сбрасывает запись сразу и еще раз после фиксации транзакции: чтение между ними видит
+    // незафиксированное старое состояние и могло бы снова положить его в кэш
+    public void invalidate(Integer userId) {
+        evict(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(userId);
+                }
+            });
+        }
+    }
+
+    private CachedSummary load(Integer userId) {
+        Integer[] orderId = new Integer[1];
+        BigDecimal[] finalPrice = new BigDecimal[1];
+        BigDecimal[] itemsTotal = { BigDecimal.ZERO };
+        Map<Integer, Integer> quantities = new TreeMap<>();
+        // Активная корзина - первая по id, как в OrderService.getOrCreateActiveOrder
+        jdbcTemplate.query(CART_LINES_SQL, rs -> {
+            int id = rs.getInt("order_id");
+            if (orderId[0] == null) {
+                orderId[0] = id;
+                finalPrice[0] = rs.getBigDecimal("final_price");
+            } else if (orderId[0] != id) {
+                return;
+            }
+            int productId = rs.getInt("product_id");
+            if (!rs.wasNull()) {
+                quantities.merge(productId, rs.getInt("quantity"), Integer::sum);
+                itemsTotal[0] = itemsTotal[0].add(rs.getBigDecimal("price"));
+            }
+        }, userId);
+
+        if (orderId[0] == null) {
+            return new CachedSummary(new CartSummaryDTO(null, Map.of(), BigDecimal.ZERO, null, null));
+        }
+
+        PriceBreakdown pricing = loyaltyPricingEngine.price(userId, itemsTotal[0]);
+        BigDecimal total = finalPrice[0] != null ? finalPrice[0] : pricing.getTotal();
+        return new CachedSummary(new CartSummaryDTO(orderId[0], quantities, total,
+                pricing.getAppliedBonusCode(), pricing.getAppliedBonusTitle()));
+    }
+
+    private void evict(Integer userId) {
+        generations.incrementAndGet(Math.floorMod(userId, GENERATION_STRIPES));
+        entries.remove(userId);
+    }
+
+    private void evictExpired(long now) {
+        entries.values().removeIf(entry -> now - entry.loadedAt >= ttlNanos);
+    }
+
+    public static class CachedSummary {
+        private final CartSummaryDTO summary;
+        private final String etag;
+
+        CachedSummary(CartSummaryDTO summary) {
+            this.summary = summary;
+            this.etag = etag(summary);
+        }
+
+        public CartSummaryDTO getSummary() {
+            return summary;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        private static String etag(CartSummaryDTO summary) {
+            String raw = summary.getOrderId() + "|" + summary.getQuantities() + "|"
+                    + summary.getTotal().stripTrailingZeros().toPlainString() + "|" + summary.getAppliedBonusCode()
+                    + "|" + summary.getAppliedBonusTitle();
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(raw.getBytes(StandardCharsets.UTF_8));
+                return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final CachedSummary summary;
+        private final long loadedAt;
+
+        Entry(CachedSummary summary, long loadedAt) {
+            this.summary = summary;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.dto.CategoryDTO;
+import com.arias.online_store.dto.CategoryWithProductsDTO;
+import com.arias.online_store.dto.ProductDTO;
+import com.arias.online_store.dto.ProductRatingDTO;
+
+import java.util.*;
+
+// Неизменяемый снимок каталога: после публикации ни массив товаров, ни сами DTO не меняются,
+// поэтому читатели работают с ним без блокировок. Любое изменение создает новый снимок.
+public final class CatalogSnapshot {
+
+    private final long version;
+    private final ProductDTO[] products;
+    private final Map<Integer, Integer> positions;
+    private final Map<Integer, int[]> categoryPositions;
+    private final List<CategoryDTO> categories;
+
+    CatalogSnapshot(long version, List<CategoryDTO> categories, Collection<ProductDTO> products) {
+        this.version = version;
+        this.categories = List.copyOf(categories);
+        this.products = products.stream()
+                .sorted(Comparator.comparing(ProductDTO::getId))
+                .toArray(ProductDTO[]::new);
+
+        Map<Integer, Integer> positions = new HashMap<>();
+        Map<Integer, List<Integer>> byCategory = new HashMap<>();
+        for (int i = 0; i < this.products.length; i++) {
+            ProductDTO product = this.products[i];
+            positions.put(product.getId(), i);
+            if (product.getCategory() != null) {
+                byCategory.computeIfAbsent(product.getCategory().getId(), k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        Map<Integer, int[]> categoryPositions = new HashMap<>();
+        byCategory.forEach((categoryId, indexes) ->
+                categoryPositions.put(categoryId, indexes.stream().mapToInt(Integer::intValue).toArray()));
+
+        this.positions = Collections.unmodifiableMap(positions);
+        this.categoryPositions = Collections.unmodifiableMap(categoryPositions);
+    }
+
+    private CatalogSnapshot(long version, ProductDTO[] products, CatalogSnapshot base) {
+        this.version = version;
+        this.products = products;
+        this.positions = base.positions;
+        this.categoryPositions = base.categoryPositions;
+        this.categories = base.categories;
+    }
+
+    static CatalogSnapshot empty() {
+        return new CatalogSnapshot(0, List.of(), List.of());
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<ProductDTO> getProducts() {
+        return Collections.unmodifiableList(Arrays.asList(products));
+    }
+
+    public Optional<ProductDTO> getProduct(Integer productId) {
+        Integer position = positions.get(productId);
+        return position != null ? Optional.of(products[position]) : Optional.empty();
+    }
+
+    public List<ProductDTO> getProductsByCategory(Integer categoryId) {
+        int[] indexes = categoryPositions.get(categoryId);
+        if (indexes == null) {
+            return List.of();
+        }
+
+        List<ProductDTO> result = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            result.add(products[index]);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    public List<CategoryDTO> getCategories() {
+        return categories;
+    }
+
+    public List<CategoryWithProductsDTO> getCategoriesWithProducts() {
+        return categories.stream()
+                .map(category -> new CategoryWithProductsDTO(category, getProductsByCategory(category.getId())))
+                .toList();
+    }
+
+    // Правка карточки со старой версией уже перекрыта более новой. Остаток и рейтинг существующего
+    // товара сохраняются: их публикуют withStock и withRating по перечитанным из базы значениям
+    CatalogSnapshot withProduct(long newVersion, ProductDTO product) {
+        Integer position = positions.get(product.getId());
+        if (position != null) {
+            ProductDTO existing = products[position];
+            if (existing.getVersion() > product.getVersion()) {
+                return this;
+            }
+            product = product.withStockQuantity(existing.getStockQuantity()).withRating(existing.getRating());
+        }
+
+        if (position != null && sameCategory(products[position], product)) {
+            // Структура каталога не изменилась — достаточно заменить одну ячейку
+            ProductDTO[] copy = products.clone();
+            copy[position] = product;
+            return new CatalogSnapshot(newVersion, copy, this);
+        }
+
+        Map<Integer, ProductDTO> byId = new LinkedHashMap<>();
+        for (ProductDTO existing : products) {
+            byId.put(existing.getId(), existing);
+        }
+        byId.put(product.getId(), product);
+        return new CatalogSnapshot(newVersion, categories, byId.values());
+    }
+
+    CatalogSnapshot withoutProduct(long newVersion, Integer productId) {
+        if (!positions.containsKey(productId)) {
+            return this;
+        }
+
+        List<ProductDTO> remaining = Arrays.stream(products)
+                .filter(p -> !p.getId().equals(productId))
+                .toList();
+        return new CatalogSnapshot(newVersion, categories, remaining);
+    }
+
+    CatalogSnapshot withStock(long newVersion, Map<Integer, Integer> stockByProductId) {
+        ProductDTO[] copy = products.clone();
+        boolean changed = false;
+
+        for (Map.Entry<Integer, Integer> entry : stockByProductId.entrySet()) {
+            Integer position = positions.get(entry.getKey());
+            if (position == null) {
+                continue;
+            }
+
+            ProductDTO current = copy[position];
+            if (!entry.getValue().equals(current.getStockQuantity())) {
+                copy[position] = current.withStockQuantity(entry.getValue());
+                changed = true;
+            }
+        }
+        return changed ? new CatalogSnapshot(newVersion, copy, this) : this;
+    }
+
+    CatalogSnapshot withRating(long newVersion, Integer productId, ProductRatingDTO rating) {
+        Integer position = positions.get(productId);
+        if (position == null) {
+            return this;
+        }
+
+        ProductDTO[] copy = products.clone();
+        copy[position] = copy[position].withRating(rating);
+        return new CatalogSnapshot(newVersion, copy, this);
+    }
+
+    private static boolean sameCategory(ProductDTO a, ProductDTO b) {
+        Integer first = a.getCategory() != null ? a.getCategory().getId() : null;
+        Integer second = b.getCategory() != null ? b.getCategory().getId() : null;
+        return Objects.equals(first, second);
+    }
+}
@@ -0,0 +1,116 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.dto.CategoryDTO;
+import com.arias.online_store.dto.ProductDTO;
+import com.arias.online_store.entity.Product;
+import com.arias.online_store.repository.CategoryRepository;
+import com.arias.online_store.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+@Service
+public class CatalogSnapshotService {
+
+    private static final String SELECT_STOCK_SQL =
+            "SELECT id, stock_quantity FROM products WHERE id IN (:ids)";
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.empty();
+
+    @Autowired
+    public CatalogSnapshotService(ProductRepository productRepository, CategoryRepository categoryRepository,
+                                  NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public synchronized void refresh() {
+        List<CategoryDTO> categories = categoryRepository.findAll().stream()
+                .map(CategoryDTO::new)
+                .toList();
+        List<ProductDTO> products = productRepository.findAllAsDto();
+        snapshot = new CatalogSnapshot(snapshot.getVersion() + 1, categories, products);
+    }
+
+    public void productSaved(Product product) {
+        ProductDTO dto = new ProductDTO(product);
+        afterCommit(() -> publish(current -> current.withProduct(current.getVersion() + 1, dto)));
+    }
+
+    public void productDeleted(Integer productId) {
+        afterCommit(() -> publish(current -> current.withoutProduct(current.getVersion() + 1, productId)));
+    }
+
+    // Остаток и рейтинг перечитываются после коммита под замком публикации: afterCommit разных
+    // транзакций может выполниться не в порядке коммитов, и значение, посчитанное внутри транзакции,
+    // затерло бы более новое. Последнее чтение под замком всегда видит все завершенные коммиты
+    public void stockChanged(Collection<Integer> productIds) {
+        List<Integer> ids = List.copyOf(productIds);
+        afterCommit(() -> publish(current -> current.withStock(current.getVersion() + 1, loadStock(ids))));
+    }
+
+    public void ratingChanged(Integer productId) {
+        afterCommit(() -> publish(current -> productRepository.findRatingById(productId)
+                .map(rating -> current.withRating(current.getVersion() + 1, productId, rating))
+                .orElse(current)));
+    }
+
+    public void catalogChanged() {
+        afterCommit(this::refresh);
+    }
+
+    private Map<Integer, Integer> loadStock(List<Integer> productIds) {
+        Map<Integer, Integer> stock = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return stock;
+        }
+
+        namedParameterJdbcTemplate.query(SELECT_STOCK_SQL, new MapSqlParameterSource("ids", productIds),
+                rs -> {
+            stock.put(rs.getInt("id"), rs.getInt("stock_quantity"));
+        });
+        return stock;
+    }
+
+    private synchronized void publish(UnaryOperator<CatalogSnapshot> change) {
+        snapshot = change.apply(snapshot);
+    }
+
+    // Изменения становятся видны читателям только после фиксации транзакции
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
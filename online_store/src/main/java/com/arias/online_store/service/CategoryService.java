@@ -1,6 +1,7 @@
 package com.arias.online_store.service;
 
 import com.arias.online_store.dto.CategoryDTO;
+import com.arias.online_store.dto.CategoryWithProductsDTO;
 import com.arias.online_store.entity.Category;
 import com.arias.online_store.repository.CategoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,16 +9,20 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final ProductSearchIndex productSearchIndex;
 
     @Autowired
-    public CategoryService(CategoryRepository categoryRepository) {
+    public CategoryService(CategoryRepository categoryRepository, CatalogSnapshotService catalogSnapshotService,
+                           ProductSearchIndex productSearchIndex) {
         this.categoryRepository = categoryRepository;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.productSearchIndex = productSearchIndex;
     }
 
     public Category saveCategory(Category category) {
@@ -28,7 +33,9 @@ public class CategoryService {
         if (categoryRepository.existsByName(category.getName())) {
             throw new IllegalStateException("Такая категория уже есть");
         }
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        catalogSnapshotService.catalogChanged();
+        return saved;
     }
 
     public Optional<Category> getCategoryById(Integer id) {
@@ -36,24 +43,28 @@ public class CategoryService {
     }
 
     public List<CategoryDTO> getAllCategoriesWithoutProducts() {
-        List<Category> categories = categoryRepository.findAll();
-        return categories.stream().map(CategoryDTO::new).collect(Collectors.toList());
+        return catalogSnapshotService.getSnapshot().getCategories();
     }
 
-    public List<Category> getAllCategoriesWithProducts() {
-        return categoryRepository.findAll();
+    public List<CategoryWithProductsDTO> getAllCategoriesWithProducts() {
+        return catalogSnapshotService.getSnapshot().getCategoriesWithProducts();
     }
 
     public Optional<Category> updateCategory(Integer id, Category newCategory) {
         return categoryRepository.findById(id).map(category -> {
             category.setName(newCategory.getName());
-            return categoryRepository.save(category);
+            Category saved = categoryRepository.save(category);
+            catalogSnapshotService.catalogChanged();
+            productSearchIndex.rebuild(catalogSnapshotService.getSnapshot().getProducts());
+            return saved;
         });
     }
 
     public boolean deleteCategory(Integer id) {
         if (categoryRepository.existsById(id)) {
             categoryRepository.deleteById(id);
+            catalogSnapshotService.catalogChanged();
+            productSearchIndex.rebuild(catalogSnapshotService.getSnapshot().getProducts());
             return true;
         }
         return false;
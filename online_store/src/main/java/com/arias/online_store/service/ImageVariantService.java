@@ -0,0 +1,215 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.entity.Product;
+import com.arias.online_store.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.*;
+
+// Уменьшенные копии загруженных изображений для списка, карточки и страницы товара.
+// Генерация идет в фоне на ограниченном пуле, поток запроса только ставит задачу в очередь.
+// Варианты лежат рядом с исходником, их имена выводятся из его имени, поэтому готовность
+// проверяется по наличию файлов
+@Slf4j
+@Service
+public class ImageVariantService {
+
+    private static final float JPEG_QUALITY = 0.82f;
+
+    private enum Variant {
+        THUMBNAIL("thumb", 160),
+        CARD("card", 480),
+        DETAIL("detail", 1200);
+
+        private final String suffix;
+        private final int maxSize;
+
+        Variant(String suffix, int maxSize) {
+            this.suffix = suffix;
+            this.maxSize = maxSize;
+        }
+    }
+
+    private final ProductRepository productRepository;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final UploadStorageService uploadStorageService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public ImageVariantService(ProductRepository productRepository, CatalogSnapshotService catalogSnapshotService,
+                               UploadStorageService uploadStorageService, TransactionTemplate transactionTemplate,
+                               @Value("${store.images.workers:2}") int workers,
+                               @Value("${store.images.queue-capacity:100}") int queueCapacity) {
+        this.productRepository = productRepository;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.uploadStorageService = uploadStorageService;
+        this.transactionTemplate = transactionTemplate;
+        // Переполнение очереди не должно тормозить загрузку: задача отбрасывается
+        // и будет поставлена заново при сохранении товара или перезапуске
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public void submit(String imageUrl) {
+        // Изображения с чужих адресов не обрабатываем
+        String key = uploadStorageService.keyOf(imageUrl);
+        if (key == null || !inProgress.add(key)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(imageUrl, key);
+                } finally {
+                    inProgress.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inProgress.remove(key);
+            log.warn("Очередь обработки изображений переполнена, {} пропущено", key);
+        }
+    }
+
+    // Проставляет товару готовые варианты его изображения, а если их еще нет, заказывает генерацию
+    public void applyVariants(Product product) {
+        String key = uploadStorageService.keyOf(product.getImage());
+        if (key != null && variantsExist(key)) {
+            product.setImageThumbnail(variantUrl(key, Variant.THUMBNAIL));
+            product.setImageCard(variantUrl(key, Variant.CARD));
+            product.setImageDetail(variantUrl(key, Variant.DETAIL));
+            return;
+        }
+
+        product.setImageThumbnail(null);
+        product.setImageCard(null);
+        product.setImageDetail(null);
+        submit(product.getImage());
+    }
+
+    // Догоняем изображения, загруженные до появления вариантов или потерянные при переполнении очереди
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        productRepository.findImagesWithoutVariants().forEach(this::submit);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void generate(String imageUrl, String key) {
+        try {
+            if (!variantsExist(key)) {
+                BufferedImage source = ImageIO.read(uploadStorageService.resolve(key).toFile());
+                if (source == null) {
+                    log.warn("Неподдерживаемый формат изображения: {}", key);
+                    return;
+                }
+                for (Variant variant : Variant.values()) {
+                    write(resize(source, variant.maxSize), uploadStorageService.resolve(variantKey(key, variant)));
+                }
+            }
+        } catch (IOException e) {
+            log.error("Не удалось подготовить варианты изображения {}", key, e);
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            productRepository.setImageVariants(imageUrl,
+                    variantUrl(key, Variant.THUMBNAIL),
+                    variantUrl(key, Variant.CARD),
+                    variantUrl(key, Variant.DETAIL));
+            productRepository.findByImage(imageUrl).forEach(catalogSnapshotService::productSaved);
+        });
+    }
+
+    // Уменьшение вдвое за шаг до последнего: одна билинейная интерполяция с большим коэффициентом дает муар.
+    // JPEG не хранит прозрачность, поэтому фон заливается белым
+    private static BufferedImage resize(BufferedImage source, int maxSize) {
+        double scale = Math.min(1.0, (double) maxSize / Math.max(source.getWidth(), source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(current, 0, 0, width, height, null);
+            graphics.dispose();
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+
+        return current;
+    }
+
+    // Пишем во временный файл и переносим атомарно, чтобы по имени варианта никогда не отдавался обрывок
+    private static void write(BufferedImage image, Path target) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), ".variant", ".tmp");
+        try {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private boolean variantsExist(String key) {
+        for (Variant variant : Variant.values()) {
+            if (!Files.exists(uploadStorageService.resolve(variantKey(key, variant)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ab/cd/<sha256>.png -> ab/cd/<sha256>.card.jpg, старое UUID_имя.png -> UUID_имя.card.jpg
+    private static String variantKey(String key, Variant variant) {
+        int dot = key.lastIndexOf('.');
+        String stem = dot > key.lastIndexOf('/') + 1 ? key.substring(0, dot) : key;
+        return stem + "." + variant.suffix + ".jpg";
+    }
+
+    private String variantUrl(String key, Variant variant) {
+        return uploadStorageService.urlOf(variantKey(key, variant));
+    }
+}
@@ -0,0 +1,192 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.entity.Achievement;
+import com.arias.online_store.entity.OrderItem;
+import com.arias.online_store.entity.UserAchievement;
+import com.arias.online_store.repository.UserAchievementRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Скидки за достижения. Правила компилируются из справочника достижений в таблицу по id достижения
+// и пересобираются, только когда AchievementRegistry перечитал справочник. Размер скидки берется
+// из текста награды ("Скидка 10%"), а если процента в нем нет - из значения по умолчанию.
+// Из бонусов корзины применяется один, самый выгодный; бонусы оформления применяются поверх него.
+// Вся арифметика - в копейках и базисных пунктах
+@Slf4j
+@Component
+public class LoyaltyPricingEngine {
+
+    private static final int FULL = 10_000;
+    private static final Pattern PERCENT = Pattern.compile("(\\d{1,2}(?:[.,]\\d{1,2})?)\\s*%");
+
+    private enum Kind {
+        // Один лучший бонус на заказ
+        CART,
+        // Применяется при оформлении после бонуса корзины
+        CHECKOUT
+    }
+
+    private static final Map<String, Rule> DEFAULTS = Map.of(
+            "first_order", new Rule(Kind.CART, 500),
+            "order_count_3", new Rule(Kind.CART, 1000),
+            "order_count_5", new Rule(Kind.CART, 1500),
+            "fast_order_after_signup", new Rule(Kind.CHECKOUT, 500)
+    );
+
+    private final AchievementRegistry achievementRegistry;
+    private final UserAchievementRepository userAchievementRepository;
+
+    private volatile RuleTable rules = new RuleTable(List.of());
+
+    @Autowired
+    public LoyaltyPricingEngine(AchievementRegistry achievementRegistry,
+                                UserAchievementRepository userAchievementRepository) {
+        this.achievementRegistry = achievementRegistry;
+        this.userAchievementRepository = userAchievementRepository;
+    }
+
+    // Неиспользованные бонусы пользователя, для которых есть правило
+    public List<UserAchievement> getActiveBonuses(Integer userId) {
+        RuleTable table = rules();
+        return userAchievementRepository.findByUserIdAndBonusUsedFalse(userId).stream()
+                .filter(bonus -> table.get(bonus.getAchievementId()) != null)
+                .toList();
+    }
+
+    public PriceBreakdown price(Integer userId, Collection<OrderItem> items) {
+        return price(getActiveBonuses(userId), subtotalCents(items));
+    }
+
+    public PriceBreakdown price(Integer userId, BigDecimal subtotal) {
+        return price(getActiveBonuses(userId), toCents(subtotal));
+    }
+
+    public PriceBreakdown price(List<UserAchievement> bonuses, long subtotalCents) {
+        RuleTable table = rules();
+        CompiledRule best = null;
+        List<CompiledRule> checkout = new ArrayList<>();
+        for (UserAchievement bonus : bonuses) {
+            CompiledRule rule = table.get(bonus.getAchievementId());
+            if (rule == null) {
+                continue;
+            }
+            if (rule.kind == Kind.CHECKOUT) {
+                checkout.add(rule);
+            } else if (best == null || rule.basisPoints > best.basisPoints) {
+                best = rule;
+            }
+        }
+
+        List<PriceBreakdown.AppliedDiscount> applied = new ArrayList<>();
+        long total = subtotalCents;
+        if (best != null) {
+            total = apply(best, total, applied);
+        }
+        for (CompiledRule rule : checkout) {
+            total = apply(rule, total, applied);
+        }
+        return new PriceBreakdown(subtotalCents, total, applied);
+    }
+
+    public static long subtotalCents(Collection<OrderItem> items) {
+        long cents = 0;
+        for (OrderItem item : items) {
+            cents = Math.addExact(cents, Math.multiplyExact(toCents(item.getProduct().getPrice()), item.getQuantity()));
+        }
+        return cents;
+    }
+
+    public static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static long apply(CompiledRule rule, long amount, List<PriceBreakdown.AppliedDiscount> applied) {
+        // Округление до копейки половиной вверх, как setScale(2, HALF_UP)
+        long discounted = (amount * (FULL - rule.basisPoints) + FULL / 2) / FULL;
+        applied.add(new PriceBreakdown.AppliedDiscount(rule.achievementId, rule.conditionCode, rule.title,
+                rule.basisPoints, amount - discounted));
+        return discounted;
+    }
+
+    // Справочник заменяется целиком при reload(), поэтому сверки по ссылке достаточно
+    private RuleTable rules() {
+        List<Achievement> achievements = achievementRegistry.getAll();
+        RuleTable table = rules;
+        if (table.source != achievements) {
+            table = new RuleTable(achievements);
+            rules = table;
+        }
+        return table;
+    }
+
+    private static Integer parseBasisPoints(String reward) {
+        if (reward == null) {
+            return null;
+        }
+        Matcher matcher = PERCENT.matcher(reward);
+        if (!matcher.find()) {
+            return null;
+        }
+        return new BigDecimal(matcher.group(1).replace(',', '.')).movePointRight(2).intValue();
+    }
+
+    private static class Rule {
+        private final Kind kind;
+        private final int basisPoints;
+
+        Rule(Kind kind, int basisPoints) {
+            this.kind = kind;
+            this.basisPoints = basisPoints;
+        }
+    }
+
+    private static class CompiledRule {
+        private final Integer achievementId;
+        private final String conditionCode;
+        private final String title;
+        private final Kind kind;
+        private final int basisPoints;
+
+        CompiledRule(Achievement achievement, Kind kind, int basisPoints) {
+            this.achievementId = achievement.getId();
+            this.conditionCode = achievement.getConditionCode();
+            this.title = achievement.getTitle();
+            this.kind = kind;
+            this.basisPoints = basisPoints;
+        }
+    }
+
+    private static class RuleTable {
+        private final List<Achievement> source;
+        private final Map<Integer, CompiledRule> byAchievementId;
+
+        RuleTable(List<Achievement> achievements) {
+            this.source = achievements;
+            Map<Integer, CompiledRule> compiled = new HashMap<>();
+            for (Achievement achievement : achievements) {
+                Rule rule = DEFAULTS.get(achievement.getConditionCode());
+                if (rule == null) {
+                    continue;
+                }
+                Integer parsed = parseBasisPoints(achievement.getReward());
+                int basisPoints = parsed != null && parsed > 0 && parsed < FULL ? parsed : rule.basisPoints;
+                compiled.put(achievement.getId(), new CompiledRule(achievement, rule.kind, basisPoints));
+            }
+            this.byAchievementId = Map.copyOf(compiled);
+            if (!achievements.isEmpty()) {
+                log.info("Правила скидок за достижения собраны: {}", byAchievementId.size());
+            }
+        }
+
+        CompiledRule get(Integer achievementId) {
+            return achievementId != null ? byAchievementId.get(achievementId) : null;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.entity.Order;
+import com.arias.online_store.entity.OrderStatus;
+import com.arias.online_store.entity.UserLoyaltyStats;
+import com.arias.online_store.repository.OrderRepository;
+import com.arias.online_store.repository.UserLoyaltyStatsRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+
+// Счетчики лояльности обновляются при доставке заказа за O(позиций заказа),
+// а проверки достижений читают только строку user_loyalty_stats
+@Service
+public class LoyaltyStatsService {
+
+    private static final String INSERT_PURCHASED_SQL =
+            "INSERT IGNORE INTO user_purchased_products (user_id, product_id) VALUES (?, ?)";
+
+    private final UserLoyaltyStatsRepository userLoyaltyStatsRepository;
+    private final OrderRepository orderRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public LoyaltyStatsService(UserLoyaltyStatsRepository userLoyaltyStatsRepository, OrderRepository orderRepository,
+                               JdbcTemplate jdbcTemplate) {
+        this.userLoyaltyStatsRepository = userLoyaltyStatsRepository;
+        this.orderRepository = orderRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<UserLoyaltyStats> getStats(Integer userId) {
+        return userLoyaltyStatsRepository.findById(userId);
+    }
+
+    // Вызывается в транзакции перевода заказа в DELIVERED
+    public void orderDelivered(Order order) {
+        Integer userId = order.getUser().getId();
+        userLoyaltyStatsRepository.createIfAbsent(userId);
+        UserLoyaltyStats stats = userLoyaltyStatsRepository.findForUpdate(userId)
+                .orElseThrow(() -> new IllegalStateException("Статистика пользователя не найдена"));
+
+        List<Integer> productIds = order.getOrderItems().stream()
+                .map(item -> item.getProduct().getId())
+                .distinct()
+                .sorted()
+                .toList();
+
+        int added = 0;
+        if (!productIds.isEmpty()) {
+            // INSERT IGNORE возвращает 0 для уже купленных ранее товаров
+            int[] inserted = jdbcTemplate.batchUpdate(INSERT_PURCHASED_SQL, productIds, productIds.size(),
+                    (ps, productId) -> {
+                ps.setInt(1, userId);
+                ps.setInt(2, productId);
+            })[0];
+            added = Arrays.stream(inserted).map(count -> count > 0 ? 1 : 0).sum();
+        }
+
+        // Тот же момент, что rebuild() берет из orders.updated_at, иначе месяц зависел бы от пути расчета
+        LocalDateTime deliveredAt = order.getUpdatedAt();
+        stats.setDeliveredCount(stats.getDeliveredCount() + 1);
+        stats.setDistinctProductCount(stats.getDistinctProductCount() + added);
+        stats.setLastDeliveredAt(deliveredAt);
+        markMonth(stats, monthIndex(YearMonth.from(deliveredAt)));
+        userLoyaltyStatsRepository.save(stats);
+    }
+
+    // Количество месяцев подряд с заказами, считая от month назад
+    public int monthStreak(UserLoyaltyStats stats, YearMonth month, int maxMonths) {
+        int current = monthIndex(month);
+        int streak = 0;
+        while (streak < maxMonths && isMonthActive(stats, current - streak)) {
+            streak++;
+        }
+        return streak;
+    }
+
+    // Счетчики могли разойтись с историей заказов, например после появления таблиц на существующей базе
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildIfStale() {
+        Long delivered = orderRepository.countByStatus(OrderStatus.DELIVERED);
+        if ((delivered != null ? delivered : 0) != userLoyaltyStatsRepository.sumDeliveredCounts()) {
+            rebuild();
+        }
+    }
+
+    @Transactional
+    public void rebuild() {
+        jdbcTemplate.update("DELETE FROM user_purchased_products");
+        jdbcTemplate.update("INSERT INTO user_purchased_products (user_id, product_id) " +
+                "SELECT DISTINCT o.user_id, oi.product_id FROM orders o " +
+                "JOIN order_items oi ON oi.order_id = o.id WHERE o.status = 'DELIVERED'");
+        jdbcTemplate.update("DELETE FROM user_loyalty_stats");
+
+        Map<Integer, UserLoyaltyStats> statsByUser = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, COUNT(*) delivered, MAX(updated_at) last_delivered_at " +
+                "FROM orders WHERE status = 'DELIVERED' GROUP BY user_id", rs -> {
+            UserLoyaltyStats stats = new UserLoyaltyStats();
+            stats.setUserId(rs.getInt("user_id"));
+            stats.setDeliveredCount(rs.getInt("delivered"));
+            stats.setLastDeliveredAt(rs.getObject("last_delivered_at", LocalDateTime.class));
+            statsByUser.put(stats.getUserId(), stats);
+        });
+
+        jdbcTemplate.query("SELECT user_id, COUNT(*) products FROM user_purchased_products GROUP BY user_id", rs -> {
+            UserLoyaltyStats stats = statsByUser.get(rs.getInt("user_id"));
+            if (stats != null) {
+                stats.setDistinctProductCount(rs.getInt("products"));
+            }
+        });
+
+        jdbcTemplate.query("SELECT DISTINCT user_id, YEAR(updated_at) * 12 + MONTH(updated_at) - 1 month_index " +
+                "FROM orders WHERE status = 'DELIVERED' ORDER BY month_index", rs -> {
+            UserLoyaltyStats stats = statsByUser.get(rs.getInt("user_id"));
+            if (stats != null) {
+                markMonth(stats, rs.getInt("month_index"));
+            }
+        });
+
+        userLoyaltyStatsRepository.saveAll(statsByUser.values());
+    }
+
+    private static int monthIndex(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+    private static void markMonth(UserLoyaltyStats stats, int month) {
+        if (stats.getActiveMonths() == 0 || month > stats.getLastActiveMonth()) {
+            long shift = stats.getActiveMonths() == 0 ? Long.SIZE : (long) month - stats.getLastActiveMonth();
+            stats.setActiveMonths(shift >= Long.SIZE ? 0 : stats.getActiveMonths() << shift);
+            stats.setLastActiveMonth(month);
+        }
+
+        int offset = stats.getLastActiveMonth() - month;
+        if (offset < Long.SIZE) {
+            stats.setActiveMonths(stats.getActiveMonths() | (1L << offset));
+        }
+    }
+
+    private static boolean isMonthActive(UserLoyaltyStats stats, int month) {
+        int offset = stats.getLastActiveMonth() - month;
+        return offset >= 0 && offset < Long.SIZE && (stats.getActiveMonths() & (1L << offset)) != 0;
+    }
+}
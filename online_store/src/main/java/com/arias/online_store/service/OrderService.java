@@ -1,69 +1,179 @@
 package com.arias.online_store.service;
 
+import com.arias.online_store.dto.AdminOrderPageDTO;
+import com.arias.online_store.dto.AdminOrderSummaryDTO;
+import com.arias.online_store.dto.CartOperation;
+import com.arias.online_store.dto.OrderHistoryDTO;
+import com.arias.online_store.dto.OrderHistoryItemDTO;
+import com.arias.online_store.dto.OrderHistoryPageDTO;
+import com.arias.online_store.dto.ReviewSummaryDTO;
 import com.arias.online_store.entity.*;
 import com.arias.online_store.repository.*;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
 
+    private static final int MAX_ADMIN_PAGE_SIZE = 100;
+    private static final int MAX_HISTORY_PAGE_SIZE = 50;
+
     private final OrderRepository orderRepository;
     private final ProductRepository productRepository;
     private final ReviewRepository reviewRepository;
+    private final UserRepository userRepository;
     private final AchievementService achievementService;
     private final UserAchievementRepository userAchievementRepository;
-    private final AchievementRepository achievementRepository;
+    private final StockService stockService;
+    private final StockReservationService stockReservationService;
+    private final AchievementEventService achievementEventService;
+    private final LoyaltyStatsService loyaltyStatsService;
+    private final OrderStatsService orderStatsService;
+    private final SalesRollupService salesRollupService;
+    private final CartSummaryService cartSummaryService;
+    private final LoyaltyPricingEngine loyaltyPricingEngine;
 
     @Autowired
-    public OrderService(OrderRepository orderRepository, ProductRepository productRepository, ReviewRepository reviewRepository, AchievementService achievementService, UserAchievementRepository userAchievementRepository, AchievementRepository achievementRepository) {
+    public OrderService(OrderRepository orderRepository, ProductRepository productRepository, ReviewRepository reviewRepository, UserRepository userRepository, AchievementService achievementService, UserAchievementRepository userAchievementRepository, StockService stockService, StockReservationService stockReservationService, AchievementEventService achievementEventService, LoyaltyStatsService loyaltyStatsService, OrderStatsService orderStatsService, SalesRollupService salesRollupService, CartSummaryService cartSummaryService, LoyaltyPricingEngine loyaltyPricingEngine) {
         this.orderRepository = orderRepository;
         this.productRepository = productRepository;
         this.reviewRepository = reviewRepository;
+        this.userRepository = userRepository;
         this.achievementService = achievementService;
         this.userAchievementRepository = userAchievementRepository;
-        this.achievementRepository = achievementRepository;
+        this.stockService = stockService;
+        this.stockReservationService = stockReservationService;
+        this.achievementEventService = achievementEventService;
+        this.loyaltyStatsService = loyaltyStatsService;
+        this.orderStatsService = orderStatsService;
+        this.salesRollupService = salesRollupService;
+        this.cartSummaryService = cartSummaryService;
+        this.loyaltyPricingEngine = loyaltyPricingEngine;
     }
 
-    public List<Order> getOrdersByUser(User user) {
-        List<Order> orders = orderRepository.findByUserId(user.getId());
+    // История заказов покупателя от новых к старым. Страница собирается тремя запросами независимо
+    // от числа заказов: сами заказы, их позиции с товарами и отзывы только на товары этой страницы
+    public OrderHistoryPageDTO getOrderHistory(Integer userId, String cursor, int size) {
+        if (size < 1 || size > MAX_HISTORY_PAGE_SIZE) {
+            throw new IllegalArgumentException("Размер страницы должен быть от 1 до " + MAX_HISTORY_PAGE_SIZE);
+        }
 
-        List<Review> userReviews = reviewRepository.findByUser(user);
+        Integer afterId = decodeHistoryCursor(cursor);
+        List<OrderHistoryDTO> rows = orderRepository.findHistoryPage(userId, afterId, Limit.of(size + 1));
+        List<OrderHistoryDTO> orders = rows.size() > size ? rows.subList(0, size) : rows;
+        if (orders.isEmpty()) {
+            return new OrderHistoryPageDTO(orders, null);
+        }
 
-        Map<Integer, Review> reviewMap = userReviews.stream()
-                .collect(Collectors.toMap(r -> r.getProduct().getId(), r -> r));
+        Map<Integer, OrderHistoryDTO> byId = new HashMap<>();
+        orders.forEach(order -> byId.put(order.getId(), order));
+        List<OrderHistoryItemDTO> items = orderRepository.findHistoryItems(byId.keySet());
 
-        for (Order order : orders) {
-            for (OrderItem item : order.getItems()) {
-                Review review = reviewMap.get(item.getProduct().getId());
-                if (review != null) {
-                    item.getProduct().setReview(review);
-                }
-            }
+        Set<Integer> productIds = items.stream().map(OrderHistoryItemDTO::getProductId).collect(Collectors.toSet());
+        Map<Integer, ReviewSummaryDTO> reviews = productIds.isEmpty() ? Map.of()
+                : reviewRepository.findSummariesByUserAndProducts(userId, productIds).stream()
+                        .collect(Collectors.toMap(ReviewSummaryDTO::getProductId, r -> r));
+
+        for (OrderHistoryItemDTO item : items) {
+            item.setReview(reviews.get(item.getProductId()));
+            OrderHistoryDTO order = byId.get(item.getOrderId());
+            order.getItems().add(item);
+            order.setItemsTotal(order.getItemsTotal().add(item.getPrice()));
         }
-        return orders;
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            String raw = String.valueOf(orders.get(size - 1).getId());
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        return new OrderHistoryPageDTO(orders, nextCursor);
     }
 
-    public Optional<Order> getProcessingOrderByUser(User user) {
-        return orderRepository.findFirstByUserIdAndStatus(user.getId(), OrderStatus.PROCESSING);
+    private Integer decodeHistoryCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректный курсор");
+        }
     }
 
-    public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+    public Optional<Order> getProcessingOrderByUser(Integer userId) {
+        return orderRepository.findFirstByUserIdAndStatus(userId, OrderStatus.PROCESSING);
+    }
+
+    // Постраничный список для администратора по (updatedAt, id) от новых к старым.
+    // Даты фильтра относятся к созданию заказа, to включается целиком
+    public AdminOrderPageDTO searchOrders(OrderStatus status, Integer userId, String email, LocalDate from,
+                                          LocalDate to, BigDecimal minTotal, String cursor, int size) {
+        if (size < 1 || size > MAX_ADMIN_PAGE_SIZE) {
+            throw new IllegalArgumentException("Размер страницы должен быть от 1 до " + MAX_ADMIN_PAGE_SIZE);
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало периода позже его конца");
+        }
+
+        String[] after = decodeOrderCursor(cursor);
+        Integer afterId = after != null ? Integer.valueOf(after[0]) : null;
+        LocalDateTime afterUpdatedAt = after != null ? LocalDateTime.parse(after[1]) : null;
+
+        List<AdminOrderSummaryDTO> rows = orderRepository.findAdminPage(status, userId,
+                email != null && !email.isBlank() ? escapeLike(email.trim()) : null,
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.plusDays(1).atStartOfDay() : null,
+                minTotal, afterUpdatedAt, afterId, Limit.of(size + 1));
+
+        if (rows.size() <= size) {
+            return new AdminOrderPageDTO(rows, null);
+        }
+
+        List<AdminOrderSummaryDTO> items = rows.subList(0, size);
+        AdminOrderSummaryDTO last = items.get(size - 1);
+        String raw = last.getId() + ":" + last.getUpdatedAt();
+        return new AdminOrderPageDTO(items,
+                Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public Optional<Order> getOrderDetails(Integer id) {
+        return orderRepository.findDetailedById(id);
+    }
+
+    private String[] decodeOrderCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Некорректный курсор");
+            }
+            Integer.parseInt(parts[0]);
+            LocalDateTime.parse(parts[1]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Некорректный курсор");
+        }
     }
 
     public Order getOrderById(Integer id) {
         return orderRepository.findById(id).orElse(null);
     }
 
+    @Transactional
     public Order createOrder(Order order) {
         order.setCreatedAt(LocalDateTime.now());
         order.setUpdatedAt(LocalDateTime.now());
@@ -76,9 +186,13 @@ public class OrderService {
             item.setPrice(product.getPrice());
             item.setOrder(order);
         }
-        return orderRepository.save(order);
+        Order saved = orderRepository.save(order);
+        orderStatsService.orderCreated();
+        cartSummaryService.invalidate(saved.getUser().getId());
+        return saved;
     }
 
+    @Transactional
     public Order updateOrderStatus(Integer orderId, OrderStatus newStatus) {
         Optional<Order> optionalOrder = orderRepository.findById(orderId);
 
@@ -93,11 +207,24 @@ public class OrderService {
             throw new IllegalStateException("Неверный переход статуса");
         }
 
+        // Резерв корзины не должен ждать истечения TTL: отмена его снимает, отправка списывает остаток
+        if (oldStatus == OrderStatus.PROCESSING && newStatus == OrderStatus.CANCELLED) {
+            stockReservationService.releaseAll(order.getId());
+        } else if (oldStatus == OrderStatus.PROCESSING && newStatus == OrderStatus.SENT) {
+            consumeStock(order);
+        }
+
+        // updatedAt - момент последнего перехода: по нему сводки продаж и лояльности относят доставку к дню
         order.setStatus(newStatus);
+        order.setUpdatedAt(LocalDateTime.now());
         Order updatedOrder = orderRepository.save(order);
+        cartSummaryService.invalidate(order.getUser().getId());
+        orderStatsService.statusChanged(order, oldStatus, newStatus);
 
         if (oldStatus != OrderStatus.DELIVERED && newStatus == OrderStatus.DELIVERED) {
-            achievementService.evaluateDeliveredOrderAchievements(order.getUser().getId());
+            loyaltyStatsService.orderDelivered(order);
+            salesRollupService.orderDelivered(order);
+            achievementEventService.publish(order.getUser().getId(), AchievementEventType.ORDER_DELIVERED);
         }
         return updatedOrder;
     }
@@ -108,61 +235,51 @@ public class OrderService {
     }
 
     @Transactional
-    public Order markOrderAsSent(User user) {
-        Order order = orderRepository.findFirstByUserIdAndStatus(user.getId(), OrderStatus.PROCESSING)
+    public Order markOrderAsSent(Integer userId) {
+        cartSummaryService.invalidate(userId);
+        Order order = orderRepository.findFirstByUserIdAndStatus(userId, OrderStatus.PROCESSING)
                 .orElseThrow(() -> new IllegalStateException("У пользователя нет активного заказа"));
 
-        for (OrderItem item : order.getOrderItems()) {
-            Product product = item.getProduct();
-            if (product.getStockQuantity() < item.getQuantity()) {
-                throw new IllegalStateException("Недостаточно товаров на складе для: " + product.getName());
-            }
-        }
-
-        for (OrderItem item : order.getOrderItems()) {
-            Product product = item.getProduct();
-            product.setStockQuantity(product.getStockQuantity() - item.getQuantity());
-        }
+        consumeStock(order);
 
-        recalculateFinalPrice(order);
         order.setStatus(OrderStatus.SENT);
         order.setUpdatedAt(LocalDateTime.now());
+        orderStatsService.statusChanged(order, OrderStatus.PROCESSING, OrderStatus.SENT);
 
-        LocalDateTime registrationTime = user.getCreatedAt();
+        // Бонус за быстрый заказ открывается до расчета цены, чтобы войти в нее правилом оформления
+        LocalDateTime registrationTime = order.getUser().getCreatedAt();
         if (registrationTime != null && Duration.between(registrationTime, order.getUpdatedAt()).toMinutes() <= 60) {
-            achievementService.checkAndUnlockAchievement(user.getId(), "fast_order_after_signup");
-
-            Achievement achievement = achievementRepository.findByConditionCode("fast_order_after_signup")
-                    .orElseThrow(() -> new IllegalStateException("Достижение fast_order_after_signup не найдено"));
-
-            UserAchievement bonus = userAchievementRepository.findByUserIdAndAchievementId(user.getId(), achievement.getId())
-                    .orElseThrow(() -> new IllegalStateException("Достижение не присвоено пользователю"));
-
-            if (!bonus.isBonusUsed()) {
-                BigDecimal discount = order.getFinalPrice().multiply(BigDecimal.valueOf(0.05));
-                order.setFinalPrice(order.getFinalPrice().subtract(discount));
-            }
-
-            bonus.setBonusUsed(true);
-            userAchievementRepository.save(bonus);
+            achievementService.checkAndUnlockAchievement(userId, "fast_order_after_signup");
         }
 
-        List<UserAchievement> activeBonuses = userAchievementRepository.findByUserIdAndBonusUsedFalse(user.getId());
-        for (UserAchievement bonus : activeBonuses) {
-            Achievement achievement = bonus.getAchievement();
-            if (achievement != null) {
-                String code = achievement.getConditionCode();
-                if (code.equals("first_order") || code.equals("order_count_3") || code.equals("order_count_5")) {
-                    bonus.setBonusUsed(true);
-                }
-            }
-        }
+        // Все бонусы со скидкой расходуются этим заказом, даже не оказавшиеся лучшими
+        List<UserAchievement> activeBonuses = loyaltyPricingEngine.getActiveBonuses(userId);
+        PriceBreakdown pricing = loyaltyPricingEngine.price(activeBonuses,
+                LoyaltyPricingEngine.subtotalCents(order.getOrderItems()));
+        order.setFinalPrice(pricing.getTotal());
+        activeBonuses.forEach(bonus -> bonus.setBonusUsed(true));
 
         userAchievementRepository.saveAll(activeBonuses);
         return orderRepository.save(order);
     }
 
-    public boolean deleteOrder(User user, Integer orderId) {
+    // Списывает остаток вместе с собственным резервом заказа; при нехватке транзакция откатывается
+    private void consumeStock(Order order) {
+        Map<Integer, Integer> reserved = stockReservationService.consume(order.getId());
+        List<Integer> outOfStock = stockService.decrement(getQuantitiesByProduct(order), reserved);
+        if (!outOfStock.isEmpty()) {
+            String names = order.getOrderItems().stream()
+                    .map(OrderItem::getProduct)
+                    .filter(product -> outOfStock.contains(product.getId()))
+                    .map(Product::getName)
+                    .collect(Collectors.joining(", "));
+            throw new IllegalStateException("Недостаточно товаров на складе для: " + names);
+        }
+    }
+
+    @Transactional
+    public boolean deleteOrder(Integer userId, Integer orderId) {
+        cartSummaryService.invalidate(userId);
         Optional<Order> optionalOrder = orderRepository.findById(orderId);
 
          if (optionalOrder.isEmpty()) {
@@ -171,7 +288,7 @@ public class OrderService {
 
          Order order = optionalOrder.get();
 
-         if (!order.getUser().getId().equals(user.getId())) {
+         if (!order.getUser().getId().equals(userId)) {
              throw new IllegalStateException("Это не ваш заказ");
          }
 
@@ -179,15 +296,21 @@ public class OrderService {
             throw new IllegalStateException("Удалять можно только отмененные или необработанные заказы");
         }
 
+        if (order.getStatus() == OrderStatus.PROCESSING) {
+            stockReservationService.releaseAll(order.getId());
+        }
         orderRepository.deleteById(order.getId());
+        orderStatsService.orderDeleted(order);
         return true;
     }
 
-    public Order addItemToOrder(User user, Integer productId, int quantity) {
+    @Transactional
+    public Order addItemToOrder(Integer userId, Integer productId, int quantity) {
+        cartSummaryService.invalidate(userId);
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new IllegalArgumentException("Товар не найден"));
 
-        Order order = getOrCreateActiveOrder(user);
+        Order order = getOrCreateActiveOrder(userId);
 
         OrderItem existingItem = order.getOrderItems().stream()
                 .filter(item -> item.getProduct().getId().equals(productId))
@@ -195,9 +318,7 @@ public class OrderService {
 
         int newQuantity = (existingItem != null ? existingItem.getQuantity() : 0) + quantity;
 
-        if (product.getStockQuantity() < newQuantity) {
-            throw new IllegalArgumentException("На складе недостаточно товара. В наличии: " + product.getStockQuantity());
-        }
+        stockReservationService.reserve(order.getId(), product, newQuantity);
 
         if (existingItem != null && order.getStatus() == OrderStatus.PROCESSING) {
             existingItem.setQuantity(newQuantity);
@@ -217,21 +338,89 @@ public class OrderService {
         return orderRepository.save(order);
     }
 
-    private BigDecimal getDiscountMultiplier(List<UserAchievement> bonuses) {
-        Map<String, BigDecimal> discountMap = Map.of(
-                "first_order", BigDecimal.valueOf(0.95),
-                "order_count_3", BigDecimal.valueOf(0.90),
-                "order_count_5", BigDecimal.valueOf(0.85)
-        );
-
-        return bonuses.stream()
-                .map(bonus -> discountMap.getOrDefault(bonus.getAchievement().getConditionCode(), BigDecimal.ONE))
-                .min(Comparator.naturalOrder())
-                .orElse(BigDecimal.ONE);
+    @Transactional
+    public Order applyCartOperations(Integer userId, List<CartOperation> operations) {
+        cartSummaryService.invalidate(userId);
+        // Резерв ссылается на заказ, поэтому новая корзина получает id до проверки остатков
+        Order order = getOrCreateActiveOrder(userId);
+
+        Map<Integer, OrderItem> itemsByProduct = new LinkedHashMap<>();
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItem item : order.getOrderItems()) {
+            itemsByProduct.put(item.getProduct().getId(), item);
+            quantities.put(item.getProduct().getId(), item.getQuantity());
+        }
+
+        // Сначала считаем итоговые количества, а базу трогаем один раз в конце
+        for (CartOperation operation : operations) {
+            Integer productId = operation.getProductId();
+            int current = quantities.getOrDefault(productId, 0);
+
+            switch (operation.getType()) {
+                case ADD -> {
+                    int delta = operation.getQuantity() != null ? operation.getQuantity() : 1;
+                    quantities.put(productId, Math.max(current + delta, 0));
+                }
+                case SET -> {
+                    if (operation.getQuantity() == null || operation.getQuantity() < 0) {
+                        throw new IllegalArgumentException("Количество не может быть отрицательным");
+                    }
+                    quantities.put(productId, operation.getQuantity());
+                }
+                case REMOVE -> quantities.put(productId, 0);
+            }
+        }
+
+        Set<Integer> changedProductIds = quantities.entrySet().stream()
+                .filter(e -> {
+                    OrderItem item = itemsByProduct.get(e.getKey());
+                    return item == null ? e.getValue() > 0 : item.getQuantity() != e.getValue();
+                })
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        Map<Integer, Product> products = productRepository.findAllById(changedProductIds).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+
+        for (Integer productId : changedProductIds) {
+            int quantity = quantities.get(productId);
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new IllegalArgumentException("Товар не найден");
+            }
+            stockReservationService.reserve(order.getId(), product, quantity);
+
+            OrderItem item = itemsByProduct.get(productId);
+            if (quantity == 0) {
+                order.getOrderItems().remove(item);
+            } else if (item != null) {
+                item.setQuantity(quantity);
+                item.setPrice(product.getPrice().multiply(BigDecimal.valueOf(quantity)));
+            } else {
+                OrderItem newItem = new OrderItem();
+                newItem.setOrder(order);
+                newItem.setProduct(product);
+                newItem.setQuantity(quantity);
+                newItem.setPrice(product.getPrice().multiply(BigDecimal.valueOf(quantity)));
+                order.getOrderItems().add(newItem);
+            }
+        }
+
+        if (order.getOrderItems().isEmpty()) {
+            orderRepository.delete(order);
+            orderStatsService.orderDeleted(order);
+            return null;
+        }
+
+        recalculateFinalPrice(order);
+        order.setUpdatedAt(LocalDateTime.now());
+        return orderRepository.save(order);
     }
 
-    public Order updateItemQuantity(User user, Integer productId, int quantity) {
-        Order order = getOrCreateActiveOrder(user);
+    @Transactional
+    public Order updateItemQuantity(Integer userId, Integer productId, int quantity) {
+        cartSummaryService.invalidate(userId);
+        Order order = getOrCreateActiveOrder(userId);
 
         OrderItem item = order.getOrderItems().stream()
                 .filter(i -> i.getProduct().getId().equals(productId))
@@ -248,9 +437,7 @@ public class OrderService {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new IllegalArgumentException("Товар не найден"));
 
-        if (quantity > product.getStockQuantity()) {
-            throw new IllegalArgumentException("На складе недостаточно товара. В наличии: " + product.getStockQuantity());
-        }
+        stockReservationService.reserve(order.getId(), product, quantity);
 
         if (quantity > 0) {
             item.setQuantity(quantity);
@@ -261,6 +448,7 @@ public class OrderService {
 
         if (order.getOrderItems().isEmpty()) {
             order.setStatus(OrderStatus.CANCELLED);
+            orderStatsService.statusChanged(order, OrderStatus.PROCESSING, OrderStatus.CANCELLED);
         }
 
         recalculateFinalPrice(order);
@@ -269,8 +457,10 @@ public class OrderService {
         return orderRepository.save(order);
     }
 
-    public Order removeItemFromOrder(User user, Integer productId) {
-        Order order = getOrCreateActiveOrder(user);
+    @Transactional
+    public Order removeItemFromOrder(Integer userId, Integer productId) {
+        cartSummaryService.invalidate(userId);
+        Order order = getOrCreateActiveOrder(userId);
 
         if (order == null || order.getOrderItems().stream()
                 .noneMatch(i -> i.getProduct().getId().equals(productId))) {
@@ -281,10 +471,12 @@ public class OrderService {
             throw new IllegalStateException("Нельзя изменить отправленный/отмененный заказ");
         }
 
+        stockReservationService.release(order.getId(), productId);
         order.getOrderItems().removeIf(item -> item.getProduct().getId().equals(productId));
 
         if (order.getOrderItems().isEmpty()) {
             orderRepository.delete(order);
+            orderStatsService.orderDeleted(order);
             return null;
         } else {
             recalculateFinalPrice(order);
@@ -294,8 +486,10 @@ public class OrderService {
         }
     }
 
-    public Order decreaseItemQuantity(User user, Integer productId) {
-        Order order = getOrCreateActiveOrder(user);
+    @Transactional
+    public Order decreaseItemQuantity(Integer userId, Integer productId) {
+        cartSummaryService.invalidate(userId);
+        Order order = getOrCreateActiveOrder(userId);
 
         if (order == null || order.getOrderItems().stream()
                 .noneMatch(i -> i.getProduct().getId().equals(productId))) {
@@ -311,6 +505,7 @@ public class OrderService {
                 .findFirst().orElse(null);
 
         if (item != null) {
+            stockReservationService.reserve(order.getId(), item.getProduct(), item.getQuantity() - 1);
             if (item.getQuantity() > 1) {
                 item.setQuantity(item.getQuantity() - 1);
                 item.setPrice(item.getProduct().getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
@@ -320,6 +515,7 @@ public class OrderService {
 
             if (order.getOrderItems().isEmpty()) {
                 orderRepository.delete(order);
+                orderStatsService.orderDeleted(order);
                 return null;
             } else {
                 recalculateFinalPrice(order);
@@ -331,8 +527,15 @@ public class OrderService {
         return order;
     }
 
-    public Order cancelOrder(User user, Integer orderId) {
-        Order order = orderRepository.findByIdAndUserIdAndStatusIn(orderId, user.getId(),
+    private Map<Integer, Integer> getQuantitiesByProduct(Order order) {
+        return order.getOrderItems().stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), OrderItem::getQuantity, Integer::sum));
+    }
+
+    @Transactional
+    public Order cancelOrder(Integer userId, Integer orderId) {
+        cartSummaryService.invalidate(userId);
+        Order order = orderRepository.findByIdAndUserIdAndStatusIn(orderId, userId,
                         List.of(OrderStatus.PROCESSING, OrderStatus.SENT))
                 .orElseThrow(() -> new IllegalStateException("Активный заказ не найден"));
 
@@ -341,32 +544,37 @@ public class OrderService {
         }
 
         if (order.getStatus() == OrderStatus.SENT) {
-            for (OrderItem item : order.getOrderItems()) {
-                Product product = item.getProduct();
-                product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
-                productRepository.save(product);
-            }
+            stockService.increment(getQuantitiesByProduct(order));
+        } else {
+            stockReservationService.releaseAll(order.getId());
         }
 
+        orderStatsService.statusChanged(order, order.getStatus(), OrderStatus.CANCELLED);
         order.setStatus(OrderStatus.CANCELLED);
         order.setUpdatedAt(LocalDateTime.now());
 
         return orderRepository.save(order);
     }
 
-    public Order getOrCreateActiveOrder(User user) {
-        return orderRepository.findFirstByUserIdAndStatus(user.getId(), OrderStatus.PROCESSING)
+    public Order getOrCreateActiveOrder(Integer userId) {
+        return orderRepository.findFirstByUserIdAndStatus(userId, OrderStatus.PROCESSING)
                 .orElseGet(() -> {
+                    // Сущность пользователя нужна только для новой корзины
+                    User user = userRepository.findById(userId)
+                            .orElseThrow(() -> new IllegalStateException("Пользователь не найден"));
                     Order newOrder = new Order();
                     newOrder.setUser(user);
                     newOrder.setStatus(OrderStatus.PROCESSING);
                     newOrder.setCreatedAt(LocalDateTime.now());
                     newOrder.setUpdatedAt(LocalDateTime.now());
                     newOrder.setOrderItems(new ArrayList<>());
-                    return orderRepository.save(newOrder);
+                    Order saved = orderRepository.save(newOrder);
+                    orderStatsService.orderCreated();
+                    return saved;
                 });
     }
 
+    @Transactional
     public boolean deleteOrderByAdmin(Integer orderId) {
         Optional<Order> optionalOrder = orderRepository.findById(orderId);
 
@@ -380,20 +588,21 @@ public class OrderService {
             throw new IllegalStateException("Удалять можно только отмененные или необработанные заказы");
         }
 
+        if (order.getStatus() == OrderStatus.PROCESSING) {
+            stockReservationService.releaseAll(order.getId());
+            cartSummaryService.invalidate(order.getUser().getId());
+        }
         orderRepository.deleteById(order.getId());
+        orderStatsService.orderDeleted(order);
         return true;
     }
 
-    private void recalculateFinalPrice(Order order) {
-        List<UserAchievement> activeBonuses = achievementService.getActiveBonuses(order.getUser());
-        BigDecimal discount = getDiscountMultiplier(activeBonuses);
-
-        BigDecimal finalPrice = order.getOrderItems().stream()
-                .map(item -> item.getProduct().getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .multiply(discount)
-                .setScale(2, RoundingMode.HALF_UP);
+    // Префикс email идет в LIKE как есть, поэтому % и _ из ввода экранируются символом из запроса
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
 
-        order.setFinalPrice(finalPrice);
+    private void recalculateFinalPrice(Order order) {
+        order.setFinalPrice(loyaltyPricingEngine.price(order.getUser().getId(), order.getOrderItems()).getTotal());
     }
 }
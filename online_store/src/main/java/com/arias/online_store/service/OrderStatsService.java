@@ -0,0 +1,139 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.dto.OrderStatsDTO;
+import com.arias.online_store.entity.Order;
+import com.arias.online_store.entity.OrderItem;
+import com.arias.online_store.entity.OrderStatus;
+import com.arias.online_store.repository.OrderStatsRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+// Счетчики заказов по статусам и выручка доставленных заказов. Меняются в той же транзакции,
+// что и статус заказа, поэтому панель администратора читает готовый итог одним запросом
+@Service
+public class OrderStatsService {
+
+    private static final int SLOTS = 16;
+
+    private final OrderStatsRepository orderStatsRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public OrderStatsService(OrderStatsRepository orderStatsRepository, JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate) {
+        this.orderStatsRepository = orderStatsRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        List<Integer> slots = IntStream.range(0, SLOTS).boxed().toList();
+        jdbcTemplate.batchUpdate("INSERT IGNORE INTO order_stats (slot, processing_count, sent_count, " +
+                        "delivered_count, cancelled_count, delivered_revenue) VALUES (?, 0, 0, 0, 0, 0)",
+                slots, slots.size(), (ps, slot) -> ps.setInt(1, slot));
+    }
+
+    public OrderStatsDTO getStats() {
+        return orderStatsRepository.sumAll();
+    }
+
+    @Transactional
+    public void orderCreated() {
+        apply(null, OrderStatus.PROCESSING, BigDecimal.ZERO);
+    }
+
+    @Transactional
+    public void statusChanged(Order order, OrderStatus from, OrderStatus to) {
+        if (from == to) {
+            return;
+        }
+        BigDecimal revenue = BigDecimal.ZERO;
+        if (to == OrderStatus.DELIVERED) {
+            revenue = itemsTotal(order);
+        } else if (from == OrderStatus.DELIVERED) {
+            revenue = itemsTotal(order).negate();
+        }
+        apply(from, to, revenue);
+    }
+
+    @Transactional
+    public void orderDeleted(Order order) {
+        apply(order.getStatus(), null,
+                order.getStatus() == OrderStatus.DELIVERED ? itemsTotal(order).negate() : BigDecimal.ZERO);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfStale() {
+        Long orders = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders", Long.class);
+        OrderStatsDTO stats = getStats();
+        long tracked = stats.getProcessing() + stats.getSent() + stats.getDelivered() + stats.getCancelled();
+        if ((orders != null ? orders : 0) != tracked) {
+            rebuild();
+        }
+    }
+
+    // Сверка с таблицей заказов на случай правок в обход сервиса. Слоты блокируются до чтения заказов:
+    // транзакции, уже изменившие счетчики, успевают зафиксироваться, а более поздние дождутся пересчета
+    @Scheduled(cron = "${store.order-stats.rebuild-cron:0 15 4 * * *}")
+    public void rebuild() {
+        transactionTemplate.executeWithoutResult(status -> rebuildLocked());
+    }
+
+    private void rebuildLocked() {
+        orderStatsRepository.findAllForUpdate();
+
+        long[] counts = new long[OrderStatus.values().length];
+        jdbcTemplate.query("SELECT status, COUNT(*) cnt FROM orders GROUP BY status",
+                rs -> { counts[OrderStatus.valueOf(rs.getString("status")).ordinal()] = rs.getLong("cnt"); });
+        BigDecimal revenue = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(oi.price), 0) FROM order_items oi " +
+                "JOIN orders o ON o.id = oi.order_id WHERE o.status = 'DELIVERED'", BigDecimal.class);
+
+        jdbcTemplate.update("UPDATE order_stats SET processing_count = 0, sent_count = 0, delivered_count = 0, " +
+                "cancelled_count = 0, delivered_revenue = 0");
+        orderStatsRepository.apply(0,
+                counts[OrderStatus.PROCESSING.ordinal()],
+                counts[OrderStatus.SENT.ordinal()],
+                counts[OrderStatus.DELIVERED.ordinal()],
+                counts[OrderStatus.CANCELLED.ordinal()],
+                revenue != null ? revenue : BigDecimal.ZERO);
+    }
+
+    private void apply(OrderStatus from, OrderStatus to, BigDecimal revenue) {
+        long[] delta = new long[OrderStatus.values().length];
+        if (from != null) {
+            delta[from.ordinal()]--;
+        }
+        if (to != null) {
+            delta[to.ordinal()]++;
+        }
+        orderStatsRepository.apply(ThreadLocalRandom.current().nextInt(SLOTS),
+                delta[OrderStatus.PROCESSING.ordinal()],
+                delta[OrderStatus.SENT.ordinal()],
+                delta[OrderStatus.DELIVERED.ordinal()],
+                delta[OrderStatus.CANCELLED.ordinal()],
+                revenue);
+    }
+
+    private static BigDecimal itemsTotal(Order order) {
+        if (order.getOrderItems() == null) {
+            return BigDecimal.ZERO;
+        }
+        return order.getOrderItems().stream()
+                .map(OrderItem::getPrice)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
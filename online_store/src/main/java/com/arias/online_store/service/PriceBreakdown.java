@@ -0,0 +1,59 @@
+package com.arias.online_store.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Результат расчета цены заказа. Суммы хранятся в копейках, BigDecimal строится только на выходе
+@Getter
+public final class PriceBreakdown {
+
+    private final long subtotalCents;
+    private final long totalCents;
+    private final List<AppliedDiscount> discounts;
+
+    PriceBreakdown(long subtotalCents, long totalCents, List<AppliedDiscount> discounts) {
+        this.subtotalCents = subtotalCents;
+        this.totalCents = totalCents;
+        this.discounts = List.copyOf(discounts);
+    }
+
+    public BigDecimal getSubtotal() {
+        return BigDecimal.valueOf(subtotalCents, 2);
+    }
+
+    public BigDecimal getTotal() {
+        return BigDecimal.valueOf(totalCents, 2);
+    }
+
+    public BigDecimal getDiscount() {
+        return BigDecimal.valueOf(subtotalCents - totalCents, 2);
+    }
+
+    // Бонус корзины, который показывается покупателю, - первая примененная скидка
+    public String getAppliedBonusCode() {
+        return discounts.isEmpty() ? null : discounts.get(0).getConditionCode();
+    }
+
+    public String getAppliedBonusTitle() {
+        return discounts.isEmpty() ? null : discounts.get(0).getTitle();
+    }
+
+    @Value
+    @AllArgsConstructor(access = AccessLevel.PACKAGE)
+    public static class AppliedDiscount {
+        Integer achievementId;
+        String conditionCode;
+        String title;
+        int basisPoints;
+        long amountCents;
+
+        public BigDecimal getAmount() {
+            return BigDecimal.valueOf(amountCents, 2);
+        }
+    }
+}
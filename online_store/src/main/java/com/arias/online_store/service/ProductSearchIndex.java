@@ -0,0 +1,314 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.dto.ProductDTO;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+@Component
+public class ProductSearchIndex {
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float CATEGORY_WEIGHT = 2.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    private static final float PREFIX_FACTOR = 0.6f;
+    private static final float FUZZY_FACTOR = 0.4f;
+    private static final int MAX_PREFIX_TERMS = 64;
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    private final CatalogSnapshotService catalogSnapshotService;
+
+    private volatile Index index = new Index();
+
+    @Autowired
+    public ProductSearchIndex(CatalogSnapshotService catalogSnapshotService) {
+        this.catalogSnapshotService = catalogSnapshotService;
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuild(catalogSnapshotService.getSnapshot().getProducts());
+    }
+
+    // Опубликованный индекс не меняется: правка собирает новый и заменяет ссылку целиком,
+    // как CatalogSnapshotService публикует снимок, поэтому поиск не видит документ наполовину
+    public synchronized void rebuild(Collection<ProductDTO> products) {
+        IndexBuilder fresh = new IndexBuilder(new Index());
+        for (ProductDTO product : products) {
+            fresh.add(product.getId(), termWeights(product));
+        }
+        index = fresh.build();
+    }
+
+    // Как и снимок каталога, индекс меняется только после фиксации: откат правки товара
+    // не должен оставить в поиске название или удаление, которых нет в базе
+    public void index(ProductDTO product) {
+        afterCommit(() -> apply(product.getId(), product));
+    }
+
+    public void remove(Integer productId) {
+        afterCommit(() -> apply(productId, null));
+    }
+
+    private synchronized void apply(Integer productId, ProductDTO product) {
+        IndexBuilder next = new IndexBuilder(index);
+        next.remove(productId);
+        if (product != null) {
+            next.add(productId, termWeights(product));
+        }
+        index = next.build();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    public List<Integer> search(String query, int limit) {
+        List<String> queryTokens = tokenize(query).stream().distinct().toList();
+        if (queryTokens.isEmpty()) {
+            return List.of();
+        }
+
+        Index current = index;
+        int documentCount = Math.max(current.documentTerms.size(), 1);
+        Map<Integer, float[]> scores = new HashMap<>();
+
+        for (String token : queryTokens) {
+            scoreToken(current, token, documentCount).forEach((productId, score) -> {
+                float[] acc = scores.computeIfAbsent(productId, k -> new float[2]);
+                acc[0] += score;
+                acc[1] += 1;
+            });
+        }
+
+        // Сначала товары, совпавшие с большим числом слов запроса, затем по релевантности
+        return scores.entrySet().stream()
+                .sorted(Comparator.<Map.Entry<Integer, float[]>>comparingDouble(e -> -e.getValue()[1])
+                        .thenComparingDouble(e -> -e.getValue()[0])
+                        .thenComparing(Map.Entry::getKey))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private Map<Integer, Float> scoreToken(Index current, String token, int documentCount) {
+        Map<Integer, Float> best = new HashMap<>();
+
+        collect(current, token, 1.0f, documentCount, best);
+
+        if (token.length() >= 2) {
+            current.postings.subMap(token, false, token + Character.MAX_VALUE, false).keySet().stream()
+                    .limit(MAX_PREFIX_TERMS)
+                    .forEach(term -> collect(current, term, PREFIX_FACTOR, documentCount, best));
+        }
+
+        // Опечатки проверяем только если точных и префиксных совпадений нет
+        if (best.isEmpty() && token.length() >= MIN_FUZZY_LENGTH) {
+            int maxEdits = token.length() >= 8 ? 2 : 1;
+            for (int length = token.length() - maxEdits; length <= token.length() + maxEdits; length++) {
+                Set<String> bucket = current.termsByLength.get(length);
+                if (bucket == null) continue;
+
+                for (String term : bucket) {
+                    int distance = editDistance(token, term, maxEdits);
+                    if (distance <= maxEdits) {
+                        collect(current, term, FUZZY_FACTOR / distance, documentCount, best);
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private void collect(Index current, String term, float factor, int documentCount, Map<Integer, Float> best) {
+        Map<Integer, Float> postings = current.postings.get(term);
+        if (postings == null || postings.isEmpty()) {
+            return;
+        }
+
+        float idf = (float) Math.log(1 + (double) documentCount / postings.size());
+        postings.forEach((productId, weight) -> best.merge(productId, weight * idf * factor, Math::max));
+    }
+
+    private Map<String, Float> termWeights(ProductDTO product) {
+        Map<String, Float> weights = new HashMap<>();
+        addField(weights, product.getName(), NAME_WEIGHT);
+        addField(weights, product.getDescription(), DESCRIPTION_WEIGHT);
+        if (product.getCategory() != null) {
+            addField(weights, product.getCategory().getName(), CATEGORY_WEIGHT);
+        }
+        return weights;
+    }
+
+    private void addField(Map<String, Float> weights, String text, float fieldWeight) {
+        for (String token : tokenize(text)) {
+            weights.merge(token, fieldWeight, Float::sum);
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                current.append(c);
+            } else if (!current.isEmpty()) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (!current.isEmpty()) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+
+    // Расстояние Дамерау-Левенштейна с отсечением: возвращает max + 1, если строки дальше max правок
+    static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+
+        int[] previousPrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previousPrevious[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+
+            if (rowMin > max) {
+                return max + 1;
+            }
+
+            int[] recycled = previousPrevious;
+            previousPrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+
+    private static final class Index {
+        private final NavigableMap<String, Map<Integer, Float>> postings;
+        private final Map<Integer, Set<String>> termsByLength;
+        private final Map<Integer, Set<String>> documentTerms;
+
+        Index() {
+            this(new TreeMap<>(), new HashMap<>(), new HashMap<>());
+        }
+
+        private Index(NavigableMap<String, Map<Integer, Float>> postings, Map<Integer, Set<String>> termsByLength,
+                      Map<Integer, Set<String>> documentTerms) {
+            this.postings = postings;
+            this.termsByLength = termsByLength;
+            this.documentTerms = documentTerms;
+        }
+    }
+
+    // Внешние карты копируются сразу, а списки термов и группы по длине — только перед первой
+    // записью, поэтому правка одного товара не копирует весь индекс
+    private static final class IndexBuilder {
+        private final TreeMap<String, Map<Integer, Float>> postings;
+        private final Map<Integer, Set<String>> termsByLength;
+        private final Map<Integer, Set<String>> documentTerms;
+        private final Set<String> copiedPostings = new HashSet<>();
+        private final Set<Integer> copiedBuckets = new HashSet<>();
+
+        IndexBuilder(Index base) {
+            this.postings = new TreeMap<>(base.postings);
+            this.termsByLength = new HashMap<>(base.termsByLength);
+            this.documentTerms = new HashMap<>(base.documentTerms);
+        }
+
+        void add(Integer productId, Map<String, Float> weights) {
+            weights.forEach((term, weight) -> postingsFor(term).put(productId, weight));
+            documentTerms.put(productId, Set.copyOf(weights.keySet()));
+        }
+
+        void remove(Integer productId) {
+            Set<String> terms = documentTerms.remove(productId);
+            if (terms == null) {
+                return;
+            }
+
+            for (String term : terms) {
+                if (!postings.containsKey(term)) continue;
+
+                Map<Integer, Float> termPostings = postingsFor(term);
+                termPostings.remove(productId);
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                    bucketFor(term.length()).remove(term);
+                }
+            }
+        }
+
+        Index build() {
+            return new Index(postings, termsByLength, documentTerms);
+        }
+
+        private Map<Integer, Float> postingsFor(String term) {
+            Map<Integer, Float> termPostings = postings.get(term);
+            if (termPostings == null) {
+                termPostings = new HashMap<>();
+                copiedPostings.add(term);
+                bucketFor(term.length()).add(term);
+            } else if (copiedPostings.add(term)) {
+                termPostings = new HashMap<>(termPostings);
+            } else {
+                return termPostings;
+            }
+            postings.put(term, termPostings);
+            return termPostings;
+        }
+
+        private Set<String> bucketFor(int length) {
+            Set<String> bucket = termsByLength.get(length);
+            if (bucket == null) {
+                bucket = new HashSet<>();
+                copiedBuckets.add(length);
+            } else if (copiedBuckets.add(length)) {
+                bucket = new HashSet<>(bucket);
+            } else {
+                return bucket;
+            }
+            termsByLength.put(length, bucket);
+            return bucket;
+        }
+    }
+}
@@ -1,74 +1,198 @@
 package com.arias.online_store.service;
 
 import com.arias.online_store.dto.ProductDTO;
+import com.arias.online_store.dto.ProductPageDTO;
 import com.arias.online_store.dto.ProductRequest;
+import com.arias.online_store.dto.ProductSort;
 import com.arias.online_store.entity.Category;
 import com.arias.online_store.entity.Product;
 import com.arias.online_store.repository.OrderRepository;
 import com.arias.online_store.repository.ProductRepository;
+import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class ProductService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final ProductRepository productRepository;
     private final CategoryService categoryService;
     private final OrderRepository orderRepository;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final ProductSearchIndex productSearchIndex;
+    private final ImageVariantService imageVariantService;
+    private final UploadStorageService uploadStorageService;
+    private final StockService stockService;
 
     @Autowired
-    public ProductService(ProductRepository productRepository, CategoryService categoryService, OrderRepository orderRepository) {
+    public ProductService(ProductRepository productRepository, CategoryService categoryService,
+                          OrderRepository orderRepository, CatalogSnapshotService catalogSnapshotService,
+                          ProductSearchIndex productSearchIndex, ImageVariantService imageVariantService,
+                          UploadStorageService uploadStorageService, StockService stockService) {
         this.productRepository = productRepository;
         this.categoryService = categoryService;
         this.orderRepository = orderRepository;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.productSearchIndex = productSearchIndex;
+        this.imageVariantService = imageVariantService;
+        this.uploadStorageService = uploadStorageService;
+        this.stockService = stockService;
     }
 
+    // Счетчик ссылок на изображение меняется в той же транзакции, что и товар:
+    // откат записи товара откатывает и счетчик, и сборщик не увидит расхождения
+    @Transactional
     public Product saveProduct(Product product) {
-        return productRepository.save(product);
+        imageVariantService.applyVariants(product);
+        Product saved = productRepository.save(product);
+        uploadStorageService.retain(saved.getImage());
+        catalogSnapshotService.productSaved(saved);
+        productSearchIndex.index(new ProductDTO(saved));
+        return saved;
     }
 
     public Optional<Product> getProductById(Integer id) {
         return productRepository.findById(id);
     }
 
-    public List<Product> getProductsByCategory(Integer categoryId) {
-        return productRepository.findByCategoryId(categoryId);
+    public List<ProductDTO> getProductsByCategory(Integer categoryId) {
+        return catalogSnapshotService.getSnapshot().getProductsByCategory(categoryId);
     }
 
     public List<ProductDTO> getAllProducts() {
-        return productRepository.findAll()
-                .stream()
-                .map(ProductDTO::new)
-                .collect(Collectors.toList());
+        return catalogSnapshotService.getSnapshot().getProducts();
+    }
+
+    public List<ProductDTO> searchProducts(String query, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        return productSearchIndex.search(query, limit).stream()
+                .map(snapshot::getProduct)
+                .flatMap(Optional::stream)
+                .toList();
+    }
+
+    public ProductPageDTO getProductPage(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                         boolean inStock, ProductSort sort, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+
+        String[] after = decodeCursor(cursor, sort);
+        Integer afterId = after != null ? Integer.valueOf(after[0]) : null;
+        BigDecimal afterValue = after != null && after.length > 1 ? new BigDecimal(after[1]) : null;
+
+        // Берем на одну запись больше, чтобы понять, есть ли следующая страница
+        Limit limit = Limit.of(size + 1);
+        List<ProductDTO> rows = switch (sort) {
+            case ID -> productRepository.findPageOrderById(categoryId, minPrice, maxPrice, inStock, afterId, limit);
+            case PRICE_ASC -> productRepository.findPageOrderByPriceAsc(categoryId, minPrice, maxPrice, inStock,
+                    afterValue, afterId, limit);
+            case PRICE_DESC -> productRepository.findPageOrderByPriceDesc(categoryId, minPrice, maxPrice, inStock,
+                    afterValue, afterId, limit);
+            case RATING -> productRepository.findPageOrderByRating(categoryId, minPrice, maxPrice, inStock,
+                    afterValue, afterId, limit);
+        };
+
+        if (rows.size() <= size) {
+            return new ProductPageDTO(rows, null);
+        }
+
+        List<ProductDTO> items = rows.subList(0, size);
+        return new ProductPageDTO(items, encodeCursor(items.get(size - 1), sort));
+    }
+
+    private String encodeCursor(ProductDTO last, ProductSort sort) {
+        String raw = switch (sort) {
+            case ID -> String.valueOf(last.getId());
+            case PRICE_ASC, PRICE_DESC -> last.getId() + ":" + last.getPrice().toPlainString();
+            case RATING -> last.getId() + ":" + (last.getRating().getAverage() != null
+                    ? last.getRating().getAverage().toPlainString() : "0");
+        };
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
     }
 
+    private String[] decodeCursor(String cursor, ProductSort sort) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != (sort == ProductSort.ID ? 1 : 2)) {
+                throw new IllegalArgumentException("Некорректный курсор");
+            }
+            Integer.parseInt(parts[0]);
+            if (parts.length > 1) {
+                new BigDecimal(parts[1]);
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректный курсор");
+        }
+    }
+
+    // Правка без версии могла бы молча перезаписать чужое изменение карточки
+    @Transactional
     public Optional<Product> updateProduct(Integer id, ProductRequest productRequest) {
+        if (productRequest.getVersion() == null) {
+            throw new IllegalArgumentException("Не указана версия товара");
+        }
+
         Optional<Product> productOpt = productRepository.findById(id);
         if (productOpt.isEmpty()) {
             return Optional.empty();
         }
 
         Product product = productOpt.get();
+        if (productRequest.getVersion() != product.getVersion()) {
+            throw new ObjectOptimisticLockingFailureException(Product.class, id);
+        }
+
         product.setName(productRequest.getName());
         product.setDescription(productRequest.getDescription());
         product.setPrice(productRequest.getPrice());
-        product.setStockQuantity(productRequest.getStockQuantity());
-        product.setImage(productRequest.getImage());
+        String previousImage = product.getImage();
+        if (!Objects.equals(productRequest.getImage(), previousImage)) {
+            product.setImage(productRequest.getImage());
+            imageVariantService.applyVariants(product);
+        }
 
         if (productRequest.getCategoryId() != null) {
             Optional<Category> categoryOpt = categoryService.getCategoryById(productRequest.getCategoryId());
             categoryOpt.ifPresent(product::setCategory);
         }
 
-        return Optional.of(productRepository.save(product));
+        Product saved = productRepository.save(product);
+        int delta = productRequest.getStockDelta() != null ? productRequest.getStockDelta() : 0;
+        saved.setStockQuantity(stockService.adjust(id, delta));
+        if (!Objects.equals(saved.getImage(), previousImage)) {
+            uploadStorageService.retain(saved.getImage());
+            uploadStorageService.release(previousImage);
+        }
+        catalogSnapshotService.productSaved(saved);
+        productSearchIndex.index(new ProductDTO(saved));
+        return Optional.of(saved);
     }
 
+    @Transactional
     public boolean deleteProduct(Integer id) {
-        if (!productRepository.existsById(id)) {
+        Optional<Product> productOpt = productRepository.findById(id);
+        if (productOpt.isEmpty()) {
             return false;
         }
 
@@ -77,6 +201,9 @@ public class ProductService {
         }
 
         productRepository.deleteById(id);
+        uploadStorageService.release(productOpt.get().getImage());
+        catalogSnapshotService.productDeleted(id);
+        productSearchIndex.remove(id);
         return true;
     }
 }
@@ -0,0 +1,140 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.entity.RefreshToken;
+import com.arias.online_store.repository.RefreshTokenRepository;
+import jakarta.transaction.Transactional;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+// Refresh-токены одноразовые: каждое обновление помечает предъявленный токен использованным
+// и выдает следующий в том же семействе. Повторное предъявление использованного токена
+// означает, что его кто-то скопировал, поэтому отзывается все семейство целиком.
+// Исключение - короткое окно сразу после ротации: вкладки, одновременно обновлявшие
+// сессию одним и тем же токеном, получают по своему токену в том же семействе
+@Service
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final Duration ttl;
+    private final Duration reuseGrace;
+
+    @Autowired
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               @Value("${store.auth.refresh-token-ttl:P30D}") Duration ttl,
+                               @Value("${store.auth.refresh-token-reuse-grace:PT30S}") Duration reuseGrace) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.ttl = ttl;
+        this.reuseGrace = reuseGrace;
+    }
+
+    // Новое семейство начинается с каждым входом по паролю
+    @Transactional
+    public String issue(String subject) {
+        return issue(subject, UUID.randomUUID().toString());
+    }
+
+    // Откат не должен отменять отзыв семейства, поэтому 401 транзакцию не откатывает
+    @Transactional(dontRollbackOn = ResponseStatusException.class)
+    public Rotation rotate(String rawToken) {
+        RefreshToken current = refreshTokenRepository.findByTokenHashForUpdate(hash(rawToken))
+                .orElseThrow(RefreshTokenService::invalid);
+
+        LocalDateTime now = LocalDateTime.now();
+        if (current.isRevoked() || current.isUsed() && !withinReuseGrace(current, now)) {
+            refreshTokenRepository.revokeFamily(current.getFamilyId());
+            throw invalid();
+        }
+        if (!current.getExpiresAt().isAfter(now)) {
+            throw invalid();
+        }
+
+        // Сам преемник восстановить нельзя (хранится только хеш), поэтому выдаем соседний токен
+        if (!current.isUsed()) {
+            current.setUsed(true);
+            current.setUsedAt(now);
+        }
+        String next = issue(current.getSubject(), current.getFamilyId());
+        return new Rotation(current.getSubject(), next);
+    }
+
+    @Transactional
+    public void revokeFamily(String rawToken) {
+        if (rawToken == null || rawToken.isBlank()) {
+            return;
+        }
+        refreshTokenRepository.findByTokenHash(hash(rawToken))
+                .ifPresent(token -> refreshTokenRepository.revokeFamily(token.getFamilyId()));
+    }
+
+    @Transactional
+    public void revokeAll(String subject) {
+        refreshTokenRepository.revokeAllBySubject(subject);
+    }
+
+    // Использованные записи держим до конца срока: по ним распознается повторное предъявление
+    @Scheduled(fixedDelayString = "${store.auth.refresh-token-purge-interval:PT1H}")
+    @Transactional
+    public void purgeExpired() {
+        refreshTokenRepository.deleteExpired(LocalDateTime.now());
+    }
+
+    private boolean withinReuseGrace(RefreshToken token, LocalDateTime now) {
+        return token.getUsedAt() != null && token.getUsedAt().plus(reuseGrace).isAfter(now);
+    }
+
+    private String issue(String subject, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        LocalDateTime now = LocalDateTime.now();
+        RefreshToken token = new RefreshToken();
+        token.setTokenHash(hash(rawToken));
+        token.setFamilyId(familyId);
+        token.setSubject(subject);
+        token.setCreatedAt(now);
+        token.setExpiresAt(now.plus(ttl));
+        refreshTokenRepository.save(token);
+        return rawToken;
+    }
+
+    // Токен случайный и длинный, соль и медленный хеш ему не нужны
+    private static String hash(String rawToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(rawToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ResponseStatusException invalid() {
+        return new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Сессия истекла, войдите снова");
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Rotation {
+        private final String subject;
+        private final String refreshToken;
+    }
+}
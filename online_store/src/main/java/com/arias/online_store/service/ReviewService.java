@@ -6,7 +6,10 @@ import com.arias.online_store.repository.ProductRepository;
 import com.arias.online_store.repository.ReviewRepository;
 import com.arias.online_store.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -17,15 +20,17 @@ public class ReviewService {
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
-    private final AchievementService achievementService;
+    private final AchievementEventService achievementEventService;
+    private final CatalogSnapshotService catalogSnapshotService;
 
     @Autowired
-    public ReviewService(ReviewRepository reviewRepository, OrderRepository orderRepository, UserRepository userRepository, ProductRepository productRepository, AchievementService achievementService) {
+    public ReviewService(ReviewRepository reviewRepository, OrderRepository orderRepository, UserRepository userRepository, ProductRepository productRepository, AchievementEventService achievementEventService, CatalogSnapshotService catalogSnapshotService) {
         this.reviewRepository = reviewRepository;
         this.orderRepository = orderRepository;
         this.userRepository = userRepository;
         this.productRepository = productRepository;
-        this.achievementService = achievementService;
+        this.achievementEventService = achievementEventService;
+        this.catalogSnapshotService = catalogSnapshotService;
     }
 
     public List<Review> getReviewsByProduct(Integer productId) {
@@ -38,7 +43,13 @@ public class ReviewService {
         return reviewRepository.findByUser(user);
     }
 
+    @Transactional
     public Review addReview(Integer userId, Integer productId, int rating, String comment) {
+        // Оценка вне 1..5 не попала бы ни в одну корзину гистограммы, но изменила бы count и sum
+        if (rating < 1 || rating > 5) {
+            throw new IllegalArgumentException("Оценка должна быть от 1 до 5");
+        }
+
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException("Пользователь не найден"));
         Product product = productRepository.findById(productId)
@@ -66,16 +77,34 @@ public class ReviewService {
         review.setComment(comment);
 
         Review saved = reviewRepository.save(review);
-        achievementService.evaluateReviewAchievements(userId);
+        applyRating(productId, rating, 1);
+        achievementEventService.publish(userId, AchievementEventType.REVIEW_CHANGED);
         return saved;
     }
 
+    @Transactional
     public void deleteReview(Integer userId, Integer productId) {
         ReviewId reviewId = new ReviewId(userId, productId);
-        if (!reviewRepository.existsById(reviewId)) {
-            throw new EntityNotFoundException("Отзыв не найден");
+        Review review = reviewRepository.findById(reviewId)
+                .orElseThrow(() -> new EntityNotFoundException("Отзыв не найден"));
+
+        reviewRepository.delete(review);
+        applyRating(productId, review.getRating(), -1);
+        achievementEventService.publish(userId, AchievementEventType.REVIEW_CHANGED);
+    }
+
+    // Агрегаты могли разойтись с отзывами, например после появления колонок на существующей базе
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildRatingsIfStale() {
+        if (reviewRepository.count() != productRepository.sumRatingCounts()) {
+            productRepository.rebuildRatings();
+            catalogSnapshotService.catalogChanged();
         }
-        reviewRepository.deleteById(reviewId);
-        achievementService.evaluateReviewAchievements(userId);
+    }
+
+    private void applyRating(Integer productId, int rating, int delta) {
+        productRepository.applyRating(productId, rating, delta, delta * rating);
+        catalogSnapshotService.ratingChanged(productId);
     }
 }
@@ -0,0 +1,204 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.dto.SalesGroupBy;
+import com.arias.online_store.dto.SalesPointDTO;
+import com.arias.online_store.entity.Order;
+import com.arias.online_store.entity.OrderItem;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Дневные срезы продаж для графиков администратора. Заказ попадает в срез в транзакции перевода
+// в DELIVERED; историю можно пересобрать из orders/order_items порциями по id заказа.
+// Запрос за любой период складывает готовые строки и не трогает таблицы заказов
+@Slf4j
+@Service
+public class SalesRollupService {
+
+    private static final int ALL = 0;
+    private static final int MAX_RANGE_DAYS = 3660;
+
+    private static final String UPSERT_SQL = "INSERT INTO sales_daily_rollups " +
+            "(sale_date, category_id, product_id, units, revenue, order_count) VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE units = units + VALUES(units), revenue = revenue + VALUES(revenue), " +
+            "order_count = order_count + VALUES(order_count)";
+
+    private static final String BACKFILL_SQL = "INSERT INTO sales_daily_rollups " +
+            "(sale_date, category_id, product_id, units, revenue, order_count) " +
+            "SELECT DATE(o.updated_at), %s, %s, SUM(oi.quantity), SUM(oi.price), COUNT(DISTINCT o.id) " +
+            "FROM orders o JOIN order_items oi ON oi.order_id = o.id JOIN products p ON p.id = oi.product_id " +
+            "WHERE o.status = 'DELIVERED' AND o.id > ? AND o.id <= ? AND o.updated_at < ? " +
+            "GROUP BY %s " +
+            "ON DUPLICATE KEY UPDATE units = units + VALUES(units), revenue = revenue + VALUES(revenue), " +
+            "order_count = order_count + VALUES(order_count)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int backfillChunkSize;
+    private final ExecutorService backfillExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+
+    @Autowired
+    public SalesRollupService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                              @Value("${store.sales-rollup.backfill-chunk-size:1000}") int backfillChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.backfillChunkSize = backfillChunkSize;
+    }
+
+    // Вызывается в транзакции перевода заказа в DELIVERED; день берется из updated_at, как в дозаполнении
+    public void orderDelivered(Order order) {
+        LocalDate date = order.getUpdatedAt().toLocalDate();
+        Map<List<Integer>, Rollup> rows = new LinkedHashMap<>();
+        for (OrderItem item : order.getOrderItems()) {
+            Integer categoryId = item.getProduct().getCategory().getId();
+            Integer productId = item.getProduct().getId();
+            rows.computeIfAbsent(List.of(categoryId, productId), key -> new Rollup()).add(item);
+            rows.computeIfAbsent(List.of(categoryId, ALL), key -> new Rollup()).add(item);
+            rows.computeIfAbsent(List.of(ALL, ALL), key -> new Rollup()).add(item);
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        // Один заказ в каждой строке, сколько бы позиций в нее ни попало
+        List<Map.Entry<List<Integer>, Rollup>> entries = new ArrayList<>(rows.entrySet());
+        jdbcTemplate.batchUpdate(UPSERT_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setDate(1, Date.valueOf(date));
+            ps.setInt(2, entry.getKey().get(0));
+            ps.setInt(3, entry.getKey().get(1));
+            ps.setLong(4, entry.getValue().units);
+            ps.setBigDecimal(5, entry.getValue().revenue);
+            ps.setLong(6, 1);
+        });
+    }
+
+    public List<SalesPointDTO> getSales(LocalDate from, LocalDate to, SalesGroupBy groupBy) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало периода позже его конца");
+        }
+        if (ChronoUnit.DAYS.between(from, to) > MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("Период не может быть длиннее " + MAX_RANGE_DAYS + " дней");
+        }
+
+        String sql = switch (groupBy) {
+            case DAY -> periodQuery("r.sale_date");
+            case WEEK -> periodQuery("DATE_SUB(r.sale_date, INTERVAL WEEKDAY(r.sale_date) DAY)");
+            case MONTH -> periodQuery("DATE_FORMAT(r.sale_date, '%Y-%m-01')");
+            case CATEGORY -> "SELECT r.category_id k, c.name name, SUM(r.units) units, SUM(r.revenue) revenue, " +
+                    "SUM(r.order_count) orders FROM sales_daily_rollups r " +
+                    "LEFT JOIN categories c ON c.id = r.category_id " +
+                    "WHERE r.sale_date BETWEEN ? AND ? AND r.category_id <> 0 AND r.product_id = 0 " +
+                    "GROUP BY r.category_id, c.name ORDER BY revenue DESC";
+            case PRODUCT -> "SELECT r.product_id k, p.name name, SUM(r.units) units, SUM(r.revenue) revenue, " +
+                    "SUM(r.order_count) orders FROM sales_daily_rollups r " +
+                    "LEFT JOIN products p ON p.id = r.product_id " +
+                    "WHERE r.sale_date BETWEEN ? AND ? AND r.product_id <> 0 " +
+                    "GROUP BY r.product_id, p.name ORDER BY revenue DESC";
+        };
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new SalesPointDTO(
+                rs.getString("k"), rs.getString("name"), rs.getLong("units"),
+                rs.getBigDecimal("revenue"), rs.getLong("orders")), Date.valueOf(from), Date.valueOf(to));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        Boolean empty = jdbcTemplate.queryForObject(
+                "SELECT NOT EXISTS (SELECT 1 FROM sales_daily_rollups)", Boolean.class);
+        Boolean delivered = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM orders WHERE status = 'DELIVERED')", Boolean.class);
+        if (Boolean.TRUE.equals(empty) && Boolean.TRUE.equals(delivered)) {
+            startBackfill();
+        }
+    }
+
+    // Возвращает false, если пересборка уже идет
+    public boolean startBackfill() {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        backfillExecutor.execute(() -> {
+            try {
+                backfill();
+            } catch (RuntimeException e) {
+                log.error("Пересборка срезов продаж прервана", e);
+            } finally {
+                backfillRunning.set(false);
+            }
+        });
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdownNow();
+    }
+
+    // Заказы, доставленные после начала пересборки, уже учтены инкрементально, поэтому граница по времени
+    // отсекает их из пересборки. Каждая порция - отдельная короткая транзакция
+    private void backfill() {
+        jdbcTemplate.update("DELETE FROM sales_daily_rollups");
+        Timestamp startedAt = Timestamp.valueOf(LocalDateTime.now());
+
+        String productLevel = String.format(BACKFILL_SQL, "p.category_id", "oi.product_id",
+                "DATE(o.updated_at), p.category_id, oi.product_id");
+        String categoryLevel = String.format(BACKFILL_SQL, "p.category_id", "0", "DATE(o.updated_at), p.category_id");
+        String dayLevel = String.format(BACKFILL_SQL, "0", "0", "DATE(o.updated_at)");
+
+        long lastId = 0;
+        long chunks = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            Long upperId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM (SELECT id FROM orders " +
+                    "WHERE status = 'DELIVERED' AND id > ? ORDER BY id LIMIT ?) chunk",
+                    Long.class, lastId, backfillChunkSize);
+            if (upperId == null) {
+                break;
+            }
+
+            long from = lastId;
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(productLevel, from, upperId, startedAt);
+                jdbcTemplate.update(categoryLevel, from, upperId, startedAt);
+                jdbcTemplate.update(dayLevel, from, upperId, startedAt);
+            });
+            lastId = upperId;
+            chunks++;
+        }
+        log.info("Срезы продаж пересобраны, порций: {}", chunks);
+    }
+
+    private static String periodQuery(String period) {
+        return "SELECT " + period + " k, NULL name, SUM(r.units) units, SUM(r.revenue) revenue, " +
+                "SUM(r.order_count) orders FROM sales_daily_rollups r " +
+                "WHERE r.sale_date BETWEEN ? AND ? AND r.category_id = 0 AND r.product_id = 0 " +
+                "GROUP BY k ORDER BY k";
+    }
+
+    private static class Rollup {
+        private long units;
+        private BigDecimal revenue = BigDecimal.ZERO;
+
+        void add(OrderItem item) {
+            units += item.getQuantity();
+            revenue = revenue.add(item.getPrice());
+        }
+    }
+}
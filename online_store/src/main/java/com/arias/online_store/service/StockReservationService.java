@@ -0,0 +1,143 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.entity.Product;
+import com.arias.online_store.entity.StockReservation;
+import com.arias.online_store.repository.StockReservationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+// Корзина резервирует товар на время: products.reserved_quantity всегда равен сумме строк
+// stock_reservations, поэтому доступный остаток — это stock_quantity - reserved_quantity.
+// Строка резерва и счетчик меняются в одной транзакции, а просроченные строки снимает sweepExpired
+@Service
+public class StockReservationService {
+
+    private static final String RESERVE_SQL =
+            "UPDATE products SET reserved_quantity = reserved_quantity + ? " +
+            "WHERE id = ? AND stock_quantity - reserved_quantity >= ?";
+    private static final String RELEASE_SQL =
+            "UPDATE products SET reserved_quantity = GREATEST(reserved_quantity - ?, 0) WHERE id = ?";
+    private static final String DELETE_EXPIRED_SQL =
+            "DELETE FROM stock_reservations WHERE order_id = ? AND product_id = ? AND expires_at <= ?";
+    private static final String AVAILABLE_SQL =
+            "SELECT stock_quantity - reserved_quantity FROM products WHERE id = ?";
+
+    private final StockReservationRepository stockReservationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final int sweepBatchSize;
+
+    @Autowired
+    public StockReservationService(StockReservationRepository stockReservationRepository, JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${store.reservation.ttl:PT15M}") Duration ttl,
+                                   @Value("${store.reservation.sweep-batch-size:500}") int sweepBatchSize) {
+        this.stockReservationRepository = stockReservationRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.ttl = ttl;
+        this.sweepBatchSize = sweepBatchSize;
+    }
+
+    // Устанавливает резерв заказа на товар в quantity штук и продлевает его срок.
+    // Вызывается внутри транзакции изменения корзины: при нехватке товара она откатывается целиком
+    public void reserve(Integer orderId, Product product, int quantity) {
+        Integer productId = product.getId();
+        if (quantity <= 0) {
+            release(orderId, productId);
+            return;
+        }
+
+        // Блокировка строки резерва не дает сборщику снять ее, пока считается разница
+        Optional<StockReservation> existing = stockReservationRepository.findForUpdate(orderId, productId);
+        int delta = quantity - existing.map(StockReservation::getQuantity).orElse(0);
+
+        if (delta > 0 && jdbcTemplate.update(RESERVE_SQL, delta, productId, delta) == 0) {
+            Integer available = jdbcTemplate.queryForObject(AVAILABLE_SQL, Integer.class, productId);
+            int canTake = Math.max((available != null ? available : 0) + quantity - delta, 0);
+            throw new IllegalArgumentException("На складе недостаточно товара \"" + product.getName()
+                    + "\". В наличии: " + canTake);
+        }
+        if (delta < 0) {
+            jdbcTemplate.update(RELEASE_SQL, -delta, productId);
+        }
+
+        StockReservation reservation = existing.orElseGet(() -> new StockReservation(orderId, productId, 0, null));
+        reservation.setQuantity(quantity);
+        reservation.setExpiresAt(LocalDateTime.now().plus(ttl));
+        stockReservationRepository.save(reservation);
+    }
+
+    public void release(Integer orderId, Integer productId) {
+        stockReservationRepository.findForUpdate(orderId, productId).ifPresent(reservation -> {
+            jdbcTemplate.update(RELEASE_SQL, reservation.getQuantity(), productId);
+            stockReservationRepository.delete(reservation);
+        });
+    }
+
+    public void releaseAll(Integer orderId) {
+        consume(orderId).forEach((productId, quantity) -> jdbcTemplate.update(RELEASE_SQL, quantity, productId));
+    }
+
+    // Удаляет резервы заказа и возвращает их количества без изменения счетчика:
+    // при оформлении StockService списывает остаток и резерв одной командой
+    public Map<Integer, Integer> consume(Integer orderId) {
+        List<StockReservation> reservations = stockReservationRepository.findByOrderIdForUpdate(orderId);
+        Map<Integer, Integer> quantities = new HashMap<>();
+        for (StockReservation reservation : reservations) {
+            quantities.put(reservation.getProductId(), reservation.getQuantity());
+        }
+        stockReservationRepository.deleteAll(reservations);
+        return quantities;
+    }
+
+    @Scheduled(fixedDelayString = "${store.reservation.sweep-interval:PT30S}")
+    public void sweepExpired() {
+        Integer swept;
+        do {
+            swept = transactionTemplate.execute(status -> sweepBatch(LocalDateTime.now()));
+        } while (swept != null && swept == sweepBatchSize);
+    }
+
+    // Строку снимает только тот, чей DELETE ее удалил: если корзина успела продлить резерв
+    // или заказ оформили, условие по expires_at не сработает и счетчик не уменьшится
+    private int sweepBatch(LocalDateTime now) {
+        List<StockReservation> expired = stockReservationRepository
+                .findByExpiresAtBeforeOrderByExpiresAt(now, Limit.of(sweepBatchSize));
+        if (expired.isEmpty()) {
+            return 0;
+        }
+
+        int[] deleted = jdbcTemplate.batchUpdate(DELETE_EXPIRED_SQL, expired, expired.size(), (ps, reservation) -> {
+            ps.setInt(1, reservation.getOrderId());
+            ps.setInt(2, reservation.getProductId());
+            ps.setObject(3, now);
+        })[0];
+
+        Map<Integer, Integer> released = new TreeMap<>();
+        for (int i = 0; i < expired.size(); i++) {
+            if (deleted[i] > 0) {
+                released.merge(expired.get(i).getProductId(), expired.get(i).getQuantity(), Integer::sum);
+            }
+        }
+
+        List<Map.Entry<Integer, Integer>> lines = new ArrayList<>(released.entrySet());
+        if (!lines.isEmpty()) {
+            jdbcTemplate.batchUpdate(RELEASE_SQL, lines, lines.size(), (ps, line) -> {
+                ps.setInt(1, line.getValue());
+                ps.setInt(2, line.getKey());
+            });
+        }
+        return expired.size();
+    }
+}
@@ -0,0 +1,105 @@
+package com.arias.online_store.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+// Остатки меняются только условными UPDATE-запросами: проверка и списание выполняются
+// одной командой в базе, поэтому параллельные оформления одного товара не теряют изменения
+@Service
+public class StockService {
+
+    // Собственный резерв заказа списывается вместе с остатком и не мешает проверке
+    private static final String DECREMENT_SQL =
+            "UPDATE products SET stock_quantity = stock_quantity - ?, " +
+            "reserved_quantity = GREATEST(reserved_quantity - ?, 0) " +
+            "WHERE id = ? AND stock_quantity - reserved_quantity + ? >= ?";
+    private static final String INCREMENT_SQL =
+            "UPDATE products SET stock_quantity = stock_quantity + ? WHERE id = ?";
+    // Ручная правка не может опустить остаток ниже уже зарезервированного в корзинах
+    private static final String ADJUST_SQL =
+            "UPDATE products SET stock_quantity = stock_quantity + ? " +
+            "WHERE id = ? AND stock_quantity - reserved_quantity + ? >= 0";
+    private static final String SELECT_ONE_STOCK_SQL =
+            "SELECT stock_quantity FROM products WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CatalogSnapshotService catalogSnapshotService;
+
+    @Autowired
+    public StockService(JdbcTemplate jdbcTemplate, CatalogSnapshotService catalogSnapshotService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.catalogSnapshotService = catalogSnapshotService;
+    }
+
+    // Возвращает id товаров, которых не хватило. Если список не пуст, вызывающий обязан
+    // откатить транзакцию — уже выполненные строки пакета иначе останутся списанными
+    public List<Integer> decrement(Map<Integer, Integer> quantityByProductId, Map<Integer, Integer> reservedByProductId) {
+        List<Map.Entry<Integer, Integer>> lines = sortedLines(quantityByProductId);
+        if (lines.isEmpty()) {
+            return List.of();
+        }
+
+        int[] updated = jdbcTemplate.batchUpdate(DECREMENT_SQL, lines, lines.size(), (ps, line) -> {
+            int reserved = reservedByProductId.getOrDefault(line.getKey(), 0);
+            ps.setInt(1, line.getValue());
+            ps.setInt(2, reserved);
+            ps.setInt(3, line.getKey());
+            ps.setInt(4, reserved);
+            ps.setInt(5, line.getValue());
+        })[0];
+
+        List<Integer> failed = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (updated[i] == 0) {
+                failed.add(lines.get(i).getKey());
+            }
+        }
+
+        if (failed.isEmpty()) {
+            publish(quantityByProductId.keySet());
+        }
+        return failed;
+    }
+
+    public void increment(Map<Integer, Integer> quantityByProductId) {
+        List<Map.Entry<Integer, Integer>> lines = sortedLines(quantityByProductId);
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INCREMENT_SQL, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setInt(2, line.getKey());
+        });
+        publish(quantityByProductId.keySet());
+    }
+
+    // Возвращает новый остаток; продажи, прошедшие пока форма админки была открыта, сохраняются
+    public int adjust(Integer productId, int delta) {
+        if (delta != 0 && jdbcTemplate.update(ADJUST_SQL, delta, productId, delta) == 0) {
+            throw new IllegalStateException("Остаток не может быть меньше зарезервированного количества");
+        }
+
+        Integer stock = jdbcTemplate.queryForObject(SELECT_ONE_STOCK_SQL, Integer.class, productId);
+        if (delta != 0) {
+            catalogSnapshotService.stockChanged(List.of(productId));
+        }
+        return stock;
+    }
+
+    // Строки обновляются в порядке id, чтобы параллельные заказы брали блокировки одинаково
+    private List<Map.Entry<Integer, Integer>> sortedLines(Map<Integer, Integer> quantityByProductId) {
+        return quantityByProductId.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .toList();
+    }
+
+    private void publish(Collection<Integer> productIds) {
+        if (!productIds.isEmpty()) {
+            catalogSnapshotService.stockChanged(productIds);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.entity.RevokedToken;
+import com.arias.online_store.repository.RevokedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Отозванные токены хранятся по jti только до окончания их собственного срока действия.
+// Таблица revoked_tokens общая для всех узлов: каждый узел подтягивает новые записи опросом,
+// а фильтр Блума отвечает "точно не отозван" для обычного запроса без обращения к карте
+@Service
+public class TokenRevocationService {
+
+    private static final int MIN_BLOOM_CAPACITY = 1024;
+    // Запас на записи, закоммиченные другим узлом чуть позже момента прошлого опроса
+    private static final Duration POLL_OVERLAP = Duration.ofSeconds(30);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    private final Map<String, Long> expiryByTokenId = new ConcurrentHashMap<>();
+    private volatile BloomFilter bloomFilter = new BloomFilter(MIN_BLOOM_CAPACITY);
+    private volatile LocalDateTime lastPolledAt;
+
+    @Autowired
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository) {
+        this.revokedTokenRepository = revokedTokenRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        LocalDateTime now = LocalDateTime.now();
+        revokedTokenRepository.findByExpiresAtAfter(now).forEach(this::remember);
+        lastPolledAt = now;
+        rebuildBloomFilter();
+    }
+
+    public void revoke(String tokenId, Instant expiresAt) {
+        if (tokenId == null || expiresAt == null || expiresAt.isBefore(Instant.now())) {
+            return;
+        }
+
+        RevokedToken revokedToken = new RevokedToken(tokenId,
+                LocalDateTime.ofInstant(expiresAt, ZoneId.systemDefault()), LocalDateTime.now());
+        revokedTokenRepository.save(revokedToken);
+        remember(revokedToken);
+    }
+
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null || !bloomFilter.mightContain(tokenId)) {
+            return false;
+        }
+        Long expiresAt = expiryByTokenId.get(tokenId);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    @Scheduled(fixedDelayString = "${store.auth.revocation-poll-interval:PT5S}")
+    public void pollRevocations() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        revokedTokenRepository.findByRevokedAtGreaterThanEqual(lastPolledAt.minus(POLL_OVERLAP))
+                .forEach(this::remember);
+        lastPolledAt = startedAt;
+    }
+
+    // Фильтр Блума не умеет удалять, поэтому после чистки просроченных записей он строится заново
+    @Scheduled(fixedDelayString = "${store.auth.revocation-purge-interval:PT10M}")
+    @Transactional
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        expiryByTokenId.values().removeIf(expiresAt -> expiresAt <= now);
+        rebuildBloomFilter();
+        revokedTokenRepository.deleteExpired(LocalDateTime.now());
+    }
+
+    private void remember(RevokedToken revokedToken) {
+        long expiresAt = revokedToken.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+
+        // Сначала карта, потом фильтр: читатель, увидевший бит, найдет и запись.
+        // Добавление идет под тем же монитором, что и пересборка: иначе пересборка могла
+        // скопировать ключи до put и опубликовать фильтр без этого jti
+        expiryByTokenId.put(revokedToken.getTokenId(), expiresAt);
+        boolean full;
+        synchronized (this) {
+            bloomFilter.add(revokedToken.getTokenId());
+            full = expiryByTokenId.size() > bloomFilter.capacity;
+        }
+
+        if (full) {
+            rebuildBloomFilter();
+        }
+    }
+
+    private synchronized void rebuildBloomFilter() {
+        List<String> tokenIds = List.copyOf(expiryByTokenId.keySet());
+        BloomFilter fresh = new BloomFilter(Math.max(MIN_BLOOM_CAPACITY, tokenIds.size() * 2));
+        tokenIds.forEach(fresh::add);
+        bloomFilter = fresh;
+    }
+
+    // Около 1% ложных срабатываний при заполнении до capacity: 10 бит на элемент и 7 хешей
+    private static class BloomFilter {
+        private static final int BITS_PER_ENTRY = 10;
+        private static final int HASHES = 7;
+
+        private final int capacity;
+        private final long bitCount;
+        private final AtomicLongArray words;
+
+        BloomFilter(int capacity) {
+            this.capacity = capacity;
+            this.bitCount = (long) capacity * BITS_PER_ENTRY;
+            this.words = new AtomicLongArray((int) ((bitCount + 63) / 64));
+        }
+
+        void add(String value) {
+            long hash = hash(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word;
+                do {
+                    word = words.get(index);
+                    if ((word & mask) != 0) break;
+                } while (!words.compareAndSet(index, word, word | mask));
+            }
+        }
+
+        boolean mightContain(String value) {
+            long hash = hash(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // 64-битный FNV-1a: две половины дают независимые хеши для двойного хеширования
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+    }
+}
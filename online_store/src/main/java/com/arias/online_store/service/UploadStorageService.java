@@ -0,0 +1,285 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.repository.UploadBlobRepository;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// Хранилище загрузок с адресацией по содержимому: файл лежит в uploads/ab/cd/<sha256>.<ext>,
+// поэтому одинаковые изображения хранятся один раз, а каталоги остаются небольшими.
+// Ссылки из products.image учитываются в upload_blobs.ref_count; файлы без ссылок удаляет
+// ночной проход сборщика, не затрагивая запросы. Старые плоские файлы UUID_имя остаются как есть
+@Slf4j
+@Service
+public class UploadStorageService {
+
+    private static final Pattern EXTENSION = Pattern.compile("^[a-z0-9]{1,8}$");
+    private static final Pattern SHARD = Pattern.compile("^[0-9a-f]{2}$");
+    private static final Pattern HASH = Pattern.compile("^[0-9a-f]{64}$");
+    private static final String TEMP_DIR = ".tmp";
+    private static final int LOCK_STRIPES = 64;
+
+    private final UploadBlobRepository uploadBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Path root;
+    private final Path tempDir;
+    private final String baseUrl;
+    private final Duration gcGracePeriod;
+    private final int gcBatchSize;
+    // Запись и удаление одного содержимого сериализуются, чтобы сборщик не удалил файл,
+    // который только что переиспользовала повторная загрузка
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    @Autowired
+    public UploadStorageService(UploadBlobRepository uploadBlobRepository, TransactionTemplate transactionTemplate,
+                                @Value("${store.uploads.dir:uploads}") String dir,
+                                @Value("${store.uploads.base-url:http://localhost:8080/uploads/}") String baseUrl,
+                                @Value("${store.uploads.gc-grace-period:P1D}") Duration gcGracePeriod,
+                                @Value("${store.uploads.gc-batch-size:500}") int gcBatchSize) throws IOException {
+        this.uploadBlobRepository = uploadBlobRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.root = Paths.get(dir).toAbsolutePath().normalize();
+        this.tempDir = root.resolve(TEMP_DIR);
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.gcGracePeriod = gcGracePeriod;
+        this.gcBatchSize = gcBatchSize;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        Files.createDirectories(tempDir);
+    }
+
+    // Файл пишется во временный каталог с подсчетом хеша на лету, целиком в памяти он не держится
+    public String store(MultipartFile file) throws IOException {
+        Path temp = Files.createTempFile(tempDir, "upload", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                size = Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            String hash = HexFormat.of().formatHex(digest.digest());
+            String key = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash
+                    + extension(file.getOriginalFilename());
+            Path target = root.resolve(key);
+
+            synchronized (lock(hash)) {
+                if (!Files.exists(target)) {
+                    Files.createDirectories(target.getParent());
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+                transactionTemplate.executeWithoutResult(status ->
+                        uploadBlobRepository.upsert(key, hash, size, LocalDateTime.now()));
+            }
+            return key;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Возвращает null, если ключ выводит за пределы хранилища
+    public Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root) || path.equals(root) || path.startsWith(tempDir)) {
+            return null;
+        }
+        return path;
+    }
+
+    public String urlOf(String key) {
+        return baseUrl + key;
+    }
+
+    // Ключ файла по адресу из products.image; для чужих адресов null
+    public String keyOf(String url) {
+        if (url == null || !url.startsWith(baseUrl) || url.length() == baseUrl.length()) {
+            return null;
+        }
+        String key = url.substring(baseUrl.length());
+        return resolve(key) != null ? key : null;
+    }
+
+    // Вызываются только внутри транзакции, которая меняет products.image
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void retain(String url) {
+        adjustRefCount(url, 1);
+    }
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void release(String url) {
+        adjustRefCount(url, -1);
+    }
+
+    @Scheduled(cron = "${store.uploads.gc-cron:0 30 3 * * *}")
+    public void collectGarbage() {
+        transactionTemplate.executeWithoutResult(status -> uploadBlobRepository.rebuildRefCounts(baseUrl));
+
+        // Свежие блобы без ссылок - это загрузки, для которых товар еще не сохранен
+        LocalDateTime cutoff = LocalDateTime.now().minus(gcGracePeriod);
+        int removed = 0;
+        List<String> orphans;
+        do {
+            orphans = uploadBlobRepository.findOrphans(cutoff, Limit.of(gcBatchSize));
+            int removedInBatch = 0;
+            for (String key : orphans) {
+                if (deleteOrphan(key, cutoff)) {
+                    removedInBatch++;
+                }
+            }
+            removed += removedInBatch;
+            if (removedInBatch == 0) {
+                break;
+            }
+        } while (orphans.size() == gcBatchSize);
+
+        removed += sweepUntracked(cutoff);
+        log.info("Сборка мусора в хранилище загрузок: удалено {}", removed);
+    }
+
+    private boolean deleteOrphan(String key, LocalDateTime cutoff) {
+        String hash = hashOf(key);
+        Path path = resolve(key);
+        if (hash == null || path == null) {
+            return false;
+        }
+
+        synchronized (lock(hash)) {
+            Integer deleted = transactionTemplate.execute(status -> uploadBlobRepository.deleteOrphan(key, cutoff));
+            if (deleted == null || deleted == 0) {
+                return false;
+            }
+            try {
+                Files.deleteIfExists(path);
+                // Варианты изображения общие для одного содержимого, удаляем их вместе с последним блобом
+                if (!uploadBlobRepository.existsBySha256(hash)) {
+                    deleteVariants(path.getParent(), hash);
+                }
+            } catch (IOException e) {
+                log.warn("Не удалось удалить файл {}", key, e);
+            }
+            return true;
+        }
+    }
+
+    // Файлы, для которых не записался блоб (сбой между записью и вставкой), и брошенные временные файлы
+    private int sweepUntracked(LocalDateTime cutoff) {
+        Instant threshold = cutoff.atZone(ZoneId.systemDefault()).toInstant();
+        int removed = 0;
+        try (DirectoryStream<Path> temps = Files.newDirectoryStream(tempDir)) {
+            for (Path temp : temps) {
+                if (Files.getLastModifiedTime(temp).toInstant().isBefore(threshold)) {
+                    Files.deleteIfExists(temp);
+                    removed++;
+                }
+            }
+
+            try (DirectoryStream<Path> first = Files.newDirectoryStream(root, this::isShard)) {
+                for (Path level1 : first) {
+                    try (DirectoryStream<Path> second = Files.newDirectoryStream(level1, this::isShard)) {
+                        for (Path level2 : second) {
+                            removed += sweepShard(level2, threshold);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Ошибка обхода хранилища загрузок", e);
+        }
+        return removed;
+    }
+
+    private int sweepShard(Path shard, Instant threshold) throws IOException {
+        int removed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(shard)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int dot = name.indexOf('.');
+                String hash = dot > 0 ? name.substring(0, dot) : name;
+                if (!HASH.matcher(hash).matches()
+                        || !Files.getLastModifiedTime(file).toInstant().isBefore(threshold)) {
+                    continue;
+                }
+                synchronized (lock(hash)) {
+                    if (!uploadBlobRepository.existsBySha256(hash)) {
+                        Files.deleteIfExists(file);
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    private void deleteVariants(Path dir, String hash) throws IOException {
+        try (DirectoryStream<Path> variants = Files.newDirectoryStream(dir, hash + ".*")) {
+            for (Path variant : variants) {
+                Files.deleteIfExists(variant);
+            }
+        }
+    }
+
+    private void adjustRefCount(String url, int delta) {
+        String key = keyOf(url);
+        if (key != null) {
+            uploadBlobRepository.adjustRefCount(key, delta);
+        }
+    }
+
+    private boolean isShard(Path path) {
+        return Files.isDirectory(path) && SHARD.matcher(path.getFileName().toString()).matches();
+    }
+
+    private Object lock(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static String hashOf(String key) {
+        String name = key.substring(key.lastIndexOf('/') + 1);
+        int dot = name.indexOf('.');
+        String hash = dot > 0 ? name.substring(0, dot) : name;
+        return HASH.matcher(hash).matches() ? hash : null;
+    }
+
+    private static String extension(String originalFilename) {
+        if (originalFilename == null) {
+            return "";
+        }
+        int dot = originalFilename.lastIndexOf('.');
+        String extension = dot >= 0 ? originalFilename.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+        return EXTENSION.matcher(extension).matches() ? "." + extension : "";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.arias.online_store.service;
 
+import com.arias.online_store.config.AuthenticatedUser;
 import com.arias.online_store.entity.Admin;
 import com.arias.online_store.entity.User;
 import com.arias.online_store.repository.AdminRepository;
@@ -25,21 +26,14 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         Optional<User> userOpt = userRepository.findByEmail(email);
         if (userOpt.isPresent()) {
             User user = userOpt.get();
-            return org.springframework.security.core.userdetails.User.builder()
-                    .username(user.getEmail())
-                    .password(user.getPasswordHash())
-                    .authorities("ROLE_USER")
-                    .build();
+            return new AuthenticatedUser(user.getId(), user.getEmail(), user.getPasswordHash(), "USER",
+                    user.isBlocked());
         }
 
         Optional<Admin> adminOpt = adminRepository.findByEmail(email);
         if (adminOpt.isPresent()) {
             Admin admin = adminOpt.get();
-            return org.springframework.security.core.userdetails.User.builder()
-                    .username(admin.getEmail())
-                    .password(admin.getPasswordHash())
-                    .authorities("ROLE_ADMIN")
-                    .build();
+            return new AuthenticatedUser(admin.getId(), admin.getEmail(), admin.getPasswordHash(), "ADMIN", false);
         }
 
         throw new UsernameNotFoundException("Пользователь " + email + "не найден");
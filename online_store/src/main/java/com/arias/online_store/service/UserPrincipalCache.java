@@ -0,0 +1,70 @@
+package com.arias.online_store.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Короткоживущий кэш учетных данных по email из токена, чтобы аутентификация запроса не ходила в базу.
+// Запись сбрасывается при блокировке, смене пароля или профиля, остальное устаревает по TTL
+@Component
+public class UserPrincipalCache {
+
+    private final UserDetailsService userDetailsService;
+    private final long ttlNanos;
+    private final int maxSize;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UserPrincipalCache(UserDetailsService userDetailsService,
+                              @Value("${store.auth.principal-cache.ttl:PT1M}") Duration ttl,
+                              @Value("${store.auth.principal-cache.max-size:10000}") int maxSize) {
+        this.userDetailsService = userDetailsService;
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+    }
+
+    public UserDetails get(String email) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(email);
+        if (entry != null && now - entry.loadedAt < ttlNanos) {
+            return entry.userDetails;
+        }
+
+        UserDetails userDetails = userDetailsService.loadUserByUsername(email);
+        if (entries.size() >= maxSize) {
+            evictExpired(now);
+        }
+        // Если кэш все еще полон, просто не кэшируем: запрос обслужится из базы
+        if (entries.size() < maxSize) {
+            entries.put(email, new Entry(userDetails, now));
+        }
+        return userDetails;
+    }
+
+    public void invalidate(String email) {
+        if (email != null) {
+            entries.remove(email);
+        }
+    }
+
+    private void evictExpired(long now) {
+        entries.values().removeIf(entry -> now - entry.loadedAt >= ttlNanos);
+    }
+
+    private static class Entry {
+        private final UserDetails userDetails;
+        private final long loadedAt;
+
+        Entry(UserDetails userDetails, long loadedAt) {
+            this.userDetails = userDetails;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -19,11 +19,16 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserPrincipalCache userPrincipalCache;
+    private final RefreshTokenService refreshTokenService;
 
     @Autowired
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                       UserPrincipalCache userPrincipalCache, RefreshTokenService refreshTokenService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userPrincipalCache = userPrincipalCache;
+        this.refreshTokenService = refreshTokenService;
     }
 
     public void registerUser(User user) {
@@ -54,12 +59,13 @@ public class UserService {
                 user.setAddress(address);
             }
             userRepository.save(user);
+            userPrincipalCache.invalidate(user.getEmail());
             return user;
         });
     }
 
-    public void changePassword(String email, String oldPassword, String newPassword) {
-        User user = userRepository.findByEmail(email)
+    public void changePassword(Integer userId, String oldPassword, String newPassword) {
+        User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Пользователь не найден"));
 
         if (!passwordEncoder.matches(oldPassword, user.getPasswordHash())) {
@@ -78,6 +84,9 @@ public class UserService {
 
         user.setPasswordHash(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        userPrincipalCache.invalidate(user.getEmail());
+        // После смены пароля остальные сессии должны войти заново
+        refreshTokenService.revokeAll(user.getEmail());
     }
 
     public void toggleUserBlock(Integer userId) {
@@ -86,5 +95,6 @@ public class UserService {
 
         user.setBlocked(!user.isBlocked());
         userRepository.save(user);
+        userPrincipalCache.invalidate(user.getEmail());
     }
 }
@@ -0,0 +1,172 @@
+package com.arias.online_store.service;
+
+import com.arias.online_store.entity.Achievement;
+import com.arias.online_store.entity.OrderItem;
+import com.arias.online_store.entity.Product;
+import com.arias.online_store.entity.UserAchievement;
+import com.arias.online_store.repository.UserAchievementRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LoyaltyPricingEngineTest {
+
+    private static final int FIRST_ORDER = 1;
+    private static final int ORDER_COUNT_3 = 2;
+    private static final int ORDER_COUNT_5 = 3;
+    private static final int FAST_ORDER = 4;
+    private static final int NO_DISCOUNT = 5;
+
+    private AchievementRegistry achievementRegistry;
+    private UserAchievementRepository userAchievementRepository;
+    private LoyaltyPricingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        achievementRegistry = mock(AchievementRegistry.class);
+        userAchievementRepository = mock(UserAchievementRepository.class);
+        when(achievementRegistry.getAll()).thenReturn(List.of(
+                achievement(FIRST_ORDER, "first_order", "Скидка 5% на следующий заказ"),
+                achievement(ORDER_COUNT_3, "order_count_3", "Скидка 10% на следующий заказ"),
+                achievement(ORDER_COUNT_5, "order_count_5", "Скидка 15% на следующий заказ"),
+                achievement(FAST_ORDER, "fast_order_after_signup", "Скидка 5% на текущий заказ"),
+                achievement(NO_DISCOUNT, "first_review", "Значок рецензента")));
+        engine = new LoyaltyPricingEngine(achievementRegistry, userAchievementRepository);
+    }
+
+    @Test
+    void priceWithoutBonusesKeepsSubtotal() {
+        PriceBreakdown pricing = engine.price(List.of(), 123_45);
+
+        assertThat(pricing.getTotal()).isEqualByComparingTo("123.45");
+        assertThat(pricing.getDiscount()).isEqualByComparingTo("0.00");
+        assertThat(pricing.getDiscounts()).isEmpty();
+        assertThat(pricing.getAppliedBonusCode()).isNull();
+    }
+
+    @Test
+    void priceByUserUsesOnlyBonusesWithRules() {
+        when(userAchievementRepository.findByUserIdAndBonusUsedFalse(7))
+                .thenReturn(List.of(bonus(NO_DISCOUNT), bonus(ORDER_COUNT_3)));
+
+        PriceBreakdown pricing = engine.price(7, List.of(item("199.99", 2), item("0.50", 3)));
+
+        assertThat(pricing.getSubtotal()).isEqualByComparingTo("401.48");
+        assertThat(pricing.getTotal()).isEqualByComparingTo("361.33");
+        assertThat(pricing.getAppliedBonusCode()).isEqualTo("order_count_3");
+        assertThat(engine.getActiveBonuses(7)).extracting(UserAchievement::getAchievementId)
+                .containsExactly(ORDER_COUNT_3);
+    }
+
+    @Test
+    void roundsEachDiscountHalfUpToTheCent() {
+        // 0.10 * 0.95 = 0.095 -> 0.10, 0.30 * 0.95 = 0.285 -> 0.29
+        assertThat(engine.price(List.of(bonus(FIRST_ORDER)), 10).getTotalCents()).isEqualTo(10);
+        assertThat(engine.price(List.of(bonus(FIRST_ORDER)), 30).getTotalCents()).isEqualTo(29);
+
+        PriceBreakdown pricing = engine.price(List.of(bonus(FIRST_ORDER)), 30);
+        assertThat(pricing.getDiscounts()).singleElement()
+                .satisfies(discount -> {
+                    assertThat(discount.getBasisPoints()).isEqualTo(500);
+                    assertThat(discount.getAmountCents()).isEqualTo(1);
+                    assertThat(discount.getAmount()).isEqualByComparingTo("0.01");
+                });
+    }
+
+    @Test
+    void appliesOnlyTheBestCartBonus() {
+        PriceBreakdown pricing = engine.price(
+                List.of(bonus(FIRST_ORDER), bonus(ORDER_COUNT_5), bonus(ORDER_COUNT_3)), 100_00);
+
+        assertThat(pricing.getTotalCents()).isEqualTo(85_00);
+        assertThat(pricing.getDiscounts()).extracting(PriceBreakdown.AppliedDiscount::getConditionCode)
+                .containsExactly("order_count_5");
+    }
+
+    @Test
+    void stacksCheckoutBonusOnTopOfCartBonus() {
+        PriceBreakdown pricing = engine.price(List.of(bonus(FAST_ORDER), bonus(ORDER_COUNT_3)), 100_00);
+
+        // 100.00 * 0.90 = 90.00, затем 90.00 * 0.95 = 85.50
+        assertThat(pricing.getTotalCents()).isEqualTo(85_50);
+        assertThat(pricing.getDiscounts()).extracting(PriceBreakdown.AppliedDiscount::getConditionCode)
+                .containsExactly("order_count_3", "fast_order_after_signup");
+        assertThat(pricing.getDiscounts()).extracting(PriceBreakdown.AppliedDiscount::getAmountCents)
+                .containsExactly(10_00L, 4_50L);
+        assertThat(pricing.getAppliedBonusCode()).isEqualTo("order_count_3");
+    }
+
+    @Test
+    void checkoutBonusAloneAppliesToSubtotal() {
+        PriceBreakdown pricing = engine.price(List.of(bonus(FAST_ORDER)), 200_00);
+
+        assertThat(pricing.getTotalCents()).isEqualTo(190_00);
+    }
+
+    @Test
+    void fallsBackToDefaultWhenRewardHasNoPercent() {
+        when(achievementRegistry.getAll()).thenReturn(List.of(
+                achievement(ORDER_COUNT_5, "order_count_5", "Особая скидка"),
+                achievement(ORDER_COUNT_3, "order_count_3", "Скидка 12,5 %")));
+
+        assertThat(engine.price(List.of(bonus(ORDER_COUNT_5)), 100_00).getTotalCents()).isEqualTo(85_00);
+        assertThat(engine.price(List.of(bonus(ORDER_COUNT_3)), 100_00).getTotalCents()).isEqualTo(87_50);
+    }
+
+    // Прежний расчет: сумма * множитель (0.95 / 0.90 / 0.85) с округлением до копейки,
+    // затем 5% за быстрый заказ от уже сниженной цены
+    @ParameterizedTest
+    @CsvSource({
+            "0.01, 1, false", "0.30, 1, true", "19.99, 1, false", "1234.57, 1, true",
+            "0.01, 2, true", "9.95, 2, false", "333.33, 2, true", "99999.99, 2, false",
+            "0.07, 3, false", "17.17, 3, true", "4999.95, 3, true", "12345.67, 3, false"
+    })
+    void matchesPreviousDiscountCalculation(String subtotal, int achievementId, boolean fastOrder) {
+        BigDecimal multiplier = switch (achievementId) {
+            case FIRST_ORDER -> new BigDecimal("0.95");
+            case ORDER_COUNT_3 -> new BigDecimal("0.90");
+            default -> new BigDecimal("0.85");
+        };
+        BigDecimal expected = new BigDecimal(subtotal).multiply(multiplier).setScale(2, RoundingMode.HALF_UP);
+        if (fastOrder) {
+            expected = expected.subtract(expected.multiply(new BigDecimal("0.05"))).setScale(2, RoundingMode.HALF_UP);
+        }
+
+        List<UserAchievement> bonuses = fastOrder
+                ? List.of(bonus(achievementId), bonus(FAST_ORDER))
+                : List.of(bonus(achievementId));
+        PriceBreakdown pricing = engine.price(bonuses, LoyaltyPricingEngine.toCents(new BigDecimal(subtotal)));
+
+        assertThat(pricing.getTotal()).isEqualByComparingTo(expected);
+    }
+
+    private static Achievement achievement(int id, String conditionCode, String reward) {
+        return new Achievement(id, conditionCode, "", conditionCode, reward, LocalDateTime.now());
+    }
+
+    private static UserAchievement bonus(int achievementId) {
+        UserAchievement bonus = new UserAchievement();
+        bonus.setUserId(7);
+        bonus.setAchievementId(achievementId);
+        return bonus;
+    }
+
+    private static OrderItem item(String price, int quantity) {
+        Product product = new Product();
+        product.setPrice(new BigDecimal(price));
+        OrderItem item = new OrderItem();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        return item;
+    }
+}